@@ -26,4 +26,11 @@ public class MessageConstant {
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
     public static final String ORDER_TIME_OUT = "订单超时，自动取消";
+    public static final String ORDER_SUBMIT_BUSY = "下单人数过多，请稍后再试";
+    public static final String ORDER_SUBMIT_NOT_FOUND = "下单请求不存在或已过期";
+    public static final String ORDER_SUBMIT_FAILED = "下单失败，请重新下单";
+    public static final String ORDER_SUBMITTING = "订单正在提交，请稍后再支付";
+    public static final String REPORT_DATE_RANGE_ERROR = "开始日期不能晚于结束日期";
+    public static final String REPORT_DATE_RANGE_TOO_LONG = "导出的日期范围不能超过366天";
+    public static final String REPORT_EXPORT_FAILED = "导出运营数据报表失败";
 }
@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cart")
+@Data
+public class CartProperties {
+
+    /**
+     * 购物车存储方式：redis 或 db
+     */
+    private String store = "redis";
+
+    /**
+     * redis中购物车最后一次修改后的保留天数
+     */
+    private long expireDays = 30;
+
+}
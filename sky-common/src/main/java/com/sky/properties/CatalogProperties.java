@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.catalog")
+@Data
+public class CatalogProperties {
+
+    /**
+     * 目录变更日志保留的最大条目数，同一菜品、套餐、分类只保留最新一条
+     */
+    private int changeLogSize = 10000;
+
+    /**
+     * 单次增量同步返回的最大变更数，超过时让客户端全量重新加载
+     */
+    private int maxChanges = 500;
+
+}
@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.id-generator")
+@Data
+public class IdGeneratorProperties {
+
+    /**
+     * 当前节点的id，0到1023；小于0时启动时通过redis租约分配
+     */
+    private long workerId = -1;
+
+    /**
+     * 自动分配的节点id租约的有效期（毫秒），续约失败超过该时间后停止生成id
+     */
+    private long leaseMillis = 30000;
+
+    /**
+     * 续约节点id租约的间隔（毫秒），应明显小于租约有效期
+     */
+    private long renewMillis = 10000;
+
+}
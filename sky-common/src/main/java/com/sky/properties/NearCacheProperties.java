@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.near-cache")
+@Data
+public class NearCacheProperties {
+
+    /**
+     * 进程内近端缓存的最大条目数
+     */
+    private long maximumSize = 1000;
+
+    /**
+     * 近端缓存条目写入后的存活时间（秒）
+     */
+    private long expireAfterWriteSeconds = 300;
+
+    /**
+     * 两次向redis校验版本号之间的最小间隔（毫秒），间隔内的读取不离开当前JVM
+     */
+    private long versionCheckMillis = 1000;
+
+}
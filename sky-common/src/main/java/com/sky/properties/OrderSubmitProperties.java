@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-submit")
+@Data
+public class OrderSubmitProperties {
+
+    /**
+     * 异步下单队列的最大长度，队列已满时拒绝下单
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 单次批量写入的最大订单数
+     */
+    private int batchSize = 100;
+
+    /**
+     * 凑批的最长等待时间（毫秒）
+     */
+    private long lingerMillis = 10;
+
+    /**
+     * 下单结果在redis中的保留时间（分钟）
+     */
+    private long statusExpireMinutes = 60;
+
+    /**
+     * 幂等键的保留时间（小时）
+     */
+    private long idempotencyExpireHours = 24;
+
+}
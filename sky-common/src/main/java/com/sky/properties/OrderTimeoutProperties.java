@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-timeout")
+@Data
+public class OrderTimeoutProperties {
+
+    /**
+     * 下单后多长时间未支付自动取消（分钟）
+     */
+    private long timeoutMinutes = 15;
+
+    /**
+     * 轮询到期订单的间隔（毫秒）
+     */
+    private long pollMillis = 200;
+
+    /**
+     * 单次批量取消的最大订单数
+     */
+    private int batchSize = 500;
+
+}
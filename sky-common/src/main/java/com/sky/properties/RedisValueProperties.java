@@ -0,0 +1,18 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.redis-value")
+@Data
+public class RedisValueProperties {
+
+    /**
+     * redis中缓存值的写入格式：smile（带类型信息的二进制json）、json（带类型信息的json）或 jdk（jdk序列化）
+     * 三种格式写入的值都可以读取，切换后旧数据不需要清理
+     */
+    private String serializer = "smile";
+
+}
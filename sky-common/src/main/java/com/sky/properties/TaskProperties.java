@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.task")
+@Data
+public class TaskProperties {
+
+    /**
+     * 定时任务主节点租约的有效期（毫秒）
+     */
+    private long leaseMillis = 30000;
+
+    /**
+     * 续约或尝试成为主节点的间隔（毫秒），应明显小于租约有效期
+     */
+    private long renewMillis = 10000;
+
+}
@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 每个会话发送队列的最大长度，队列已满时丢弃新消息
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * 连续丢弃的消息数达到该值时，认为客户端消费过慢并关闭会话
+     */
+    private int closeAfterDrops = 64;
+
+    /**
+     * 单条消息的发送超时时间（毫秒），超时视为发送失败并关闭会话
+     */
+    private long sendTimeoutMillis = 5000;
+
+    /**
+     * 多节点之间转发推送消息的redis频道
+     */
+    private String relayChannel = "sky:websocket";
+
+    /**
+     * 转发消息的攒批时间（毫秒），时间内的消息合并为一次发布
+     */
+    private long relayBatchMillis = 50;
+
+    /**
+     * 单次发布的最大消息数，达到后立即发布
+     */
+    private int relayBatchSize = 100;
+
+}
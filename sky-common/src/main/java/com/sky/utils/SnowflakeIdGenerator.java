@@ -0,0 +1,87 @@
+package com.sky.utils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 雪花算法id生成器
+ * id由 41位时间戳（毫秒，自2024-01-01起） + 10位节点id + 12位序列号 组成，同一节点内无锁递增，
+ * 不同节点的节点id不同，生成的id全局唯一且大致按时间递增
+ */
+public class SnowflakeIdGenerator {
+
+    // 时间戳的起始时间 2024-01-01 00:00:00 UTC
+    private static final long EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long workerId;
+    // 节点id当前是否仍归本节点使用，节点id由租约分配时，租约失效后停止生成
+    private final BooleanSupplier workerIdValid;
+
+    // 最近一次生成id的 时间戳 << 序列号位数 | 序列号，通过CAS更新
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId) {
+        this(workerId, () -> true);
+    }
+
+    public SnowflakeIdGenerator(long workerId, BooleanSupplier workerIdValid) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("节点id必须在0到" + MAX_WORKER_ID + "之间：" + workerId);
+        }
+        this.workerId = workerId;
+        this.workerIdValid = workerIdValid;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 生成下一个id
+     * 同一毫秒内序列号用完或时钟回拨时，借用下一毫秒继续生成，不阻塞也不重复；
+     * 时钟追上之后恢复使用当前时间
+     * @return
+     */
+    public long nextId() {
+        if (!workerIdValid.getAsBoolean()) {
+            throw new IllegalStateException("节点id已失效，停止生成id：" + workerId);
+        }
+        while (true) {
+            long last = state.get();
+            long lastMillis = last >>> SEQUENCE_BITS;
+            long now = currentTimeMillis();
+
+            long next;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = last + 1;
+            } else {
+                next = (lastMillis + 1) << SEQUENCE_BITS;
+            }
+
+            if (state.compareAndSet(last, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return ((millis - EPOCH) << (WORKER_ID_BITS + SEQUENCE_BITS))
+                        | (workerId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 当前时间（毫秒）
+     * @return
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
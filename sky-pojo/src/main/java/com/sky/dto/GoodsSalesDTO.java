@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 
 @Data
 @AllArgsConstructor
@@ -17,4 +18,7 @@ public class GoodsSalesDTO implements Serializable {
 
     //销量
     private Integer number;
+
+    //销售额
+    private BigDecimal amount;
 }
@@ -27,4 +27,13 @@ public class OrdersPageQueryDTO implements Serializable {
 
     private Long userId;
 
+    // 游标分页：上一页最后一条订单的下单时间和id，传入时忽略page，从游标之后开始查询
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastOrderTime;
+
+    private Long lastId;
+
+    // 是否查询总记录数，为false时不执行count查询，返回的总记录数为-1
+    private Boolean count;
+
 }
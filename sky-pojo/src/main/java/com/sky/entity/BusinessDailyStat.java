@@ -0,0 +1,56 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusinessDailyStat implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //统计日期（下单日期）
+    private LocalDate statDate;
+
+    //营业额：已完成订单的金额合计
+    private BigDecimal turnover;
+
+    //订单总数
+    private Integer totalOrderCount;
+
+    //新增用户数
+    private Integer newUsers;
+
+    //各状态的订单数 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+    private Integer pendingPaymentCount;
+
+    private Integer toBeConfirmedCount;
+
+    private Integer confirmedCount;
+
+    private Integer deliveryInProgressCount;
+
+    private Integer completedCount;
+
+    private Integer cancelledCount;
+
+    //是否已日结 0否 1是
+    private Integer closed;
+
+    //是否已按原始数据汇总过 0否 1是，只由增量累加出的行缺少首次累加之前的数据
+    private Integer rebuilt;
+
+    private LocalDateTime updateTime;
+}
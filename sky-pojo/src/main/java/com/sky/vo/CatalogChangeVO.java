@@ -0,0 +1,37 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 商品目录的一条变更
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogChangeVO implements Serializable {
+
+    /**
+     * 变更类型 dish菜品 flavor菜品口味 setmeal套餐 category分类
+     */
+    public static final String DISH = "dish";
+    public static final String FLAVOR = "flavor";
+    public static final String SETMEAL = "setmeal";
+    public static final String CATEGORY = "category";
+
+    //变更序号，即变更后的目录版本号
+    private Long seq;
+    //变更类型
+    private String type;
+    //菜品、套餐、分类id，口味变更时为菜品id
+    private Long id;
+    //是否已删除，停售、禁用的菜品、套餐、分类也按删除处理
+    private Boolean deleted;
+    //变更后的数据：菜品为Dish，口味为DishFlavor列表，套餐为Setmeal，分类为Category；删除时为空
+    private Object data;
+}
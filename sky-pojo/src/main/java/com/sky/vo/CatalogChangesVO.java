@@ -0,0 +1,26 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 商品目录的增量同步结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogChangesVO implements Serializable {
+
+    //同步到的目录版本号，下次同步时作为since传入
+    private Long version;
+    //为true时客户端需全量重新加载目录，再从version开始增量同步
+    private Boolean reset;
+    //按序号排列的变更，同一条目只保留最新一条
+    private List<CatalogChangeVO> changes;
+}
@@ -0,0 +1,24 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 用户端完整菜单
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuVO implements Serializable {
+
+    //生成菜单时的目录版本号，之后可作为since增量同步
+    private Long version;
+    //启用的分类，按顺序排列
+    private List<MenuCategoryVO> categories;
+}
@@ -0,0 +1,40 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 异步下单的处理结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSubmitStatusVO implements Serializable {
+
+    /**
+     * 处理状态 0处理中 1下单成功 2下单失败
+     */
+    public static final Integer PROCESSING = 0;
+    public static final Integer SUCCESS = 1;
+    public static final Integer FAILED = 2;
+
+    //订单号
+    private String orderNumber;
+    //处理状态
+    private Integer status;
+    //订单id，下单成功后才有值
+    private Long id;
+    //订单金额
+    private BigDecimal orderAmount;
+    //下单时间
+    private LocalDateTime orderTime;
+    //下单失败的原因
+    private String message;
+}
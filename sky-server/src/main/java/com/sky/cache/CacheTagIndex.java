@@ -0,0 +1,115 @@
+package com.sky.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存标签索引
+ * 写入缓存时把key登记到标签对应的set中，失效时只删除set中登记的key，
+ * 清理代价只与受影响的key数量有关，不再通过keys命令扫描整个键空间
+ */
+@Component
+@Slf4j
+public class CacheTagIndex implements ApplicationRunner {
+
+    // 标签set的key前缀，CACHE_TAG_{tag}
+    public static final String TAG_PREFIX = "CACHE_TAG_";
+
+    // 删除标签set中登记的所有key和标签set本身，分批删除避免unpack的参数过多，返回删除的key数量
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>(
+            "local keys = redis.call('SMEMBERS', KEYS[1]) " +
+            "for i = 1, #keys, 1000 do " +
+            "  redis.call('DEL', unpack(keys, i, math.min(i + 999, #keys))) " +
+            "end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return #keys", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 已登记的标签及其对应的key模式，用于启动时补登记旧数据
+    private final Map<String, String> patterns = new ConcurrentHashMap<>();
+
+    /**
+     * 登记一个标签，启动时会把匹配pattern的已有key补登记到标签中
+     * @param tag
+     * @param pattern
+     */
+    public void register(String tag, String pattern) {
+        patterns.put(tag, pattern);
+    }
+
+    /**
+     * 把key登记到标签中
+     * @param tag
+     * @param key
+     */
+    public void tag(String tag, String key) {
+        stringRedisTemplate.opsForSet().add(TAG_PREFIX + tag, key);
+    }
+
+    /**
+     * 把多个key一次登记到标签中
+     * @param tag
+     * @param keys
+     */
+    public void tagAll(String tag, Collection<String> keys) {
+        if (!keys.isEmpty()) {
+            stringRedisTemplate.opsForSet().add(TAG_PREFIX + tag, keys.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 把key从标签中移除
+     * @param tag
+     * @param key
+     */
+    public void untag(String tag, String key) {
+        stringRedisTemplate.opsForSet().remove(TAG_PREFIX + tag, key);
+    }
+
+    /**
+     * 删除标签下登记的所有key
+     * 读取、删除和移除登记由lua脚本原子完成，期间重新写入并登记的key不会丢失登记
+     * @param tag
+     * @return 删除的key数量
+     */
+    public long invalidate(String tag) {
+        Long count = stringRedisTemplate.execute(INVALIDATE_SCRIPT, Collections.singletonList(TAG_PREFIX + tag));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 启动时用scan把引入标签索引之前写入的key补登记到标签中，只执行一次且不阻塞redis
+     * @param args
+     */
+    public void run(ApplicationArguments args) {
+        patterns.forEach((tag, pattern) -> {
+            try (Cursor<String> cursor = stringRedisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(1000).build())) {
+                Set<String> keys = new HashSet<>();
+                cursor.forEachRemaining(keys::add);
+                if (!keys.isEmpty()) {
+                    stringRedisTemplate.opsForSet().add(TAG_PREFIX + tag, keys.toArray(new String[0]));
+                }
+                log.info("缓存标签{}补登记{}个key", tag, keys.size());
+            } catch (Exception e) {
+                log.warn("缓存标签{}补登记失败：{}", tag, e.getMessage());
+            }
+        });
+    }
+}
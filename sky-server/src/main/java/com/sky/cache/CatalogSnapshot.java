@@ -0,0 +1,243 @@
+package com.sky.cache;
+
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.CategoryMapper;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.vo.CatalogChangeVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 进程内商品目录快照，供购物车、下单等链路按id查询菜品、套餐、口味、分类
+ * 条目在第一次查询时从数据库加载；本节点修改目录后只刷新被修改的条目，
+ * 其他节点修改目录时递增版本号，本节点发现版本号变化后清空快照，重新按需加载
+ * 业务层修改目录后调用refresh*方法，事务提交后依次清理由目录生成的缓存、刷新快照、递增版本号并记录变更日志
+ */
+@Component
+@Slf4j
+public class CatalogSnapshot {
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private DishFlavorMapper dishFlavorMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private CategoryMapper categoryMapper;
+    @Autowired
+    private DishCache dishCache;
+    @Autowired
+    private SetmealCache setmealCache;
+
+    private final Map<Long, Dish> dishes = new ConcurrentHashMap<>();
+    private final Map<Long, List<DishFlavor>> flavors = new ConcurrentHashMap<>();
+    private final Map<Long, Setmeal> setmeals = new ConcurrentHashMap<>();
+    private final Map<Long, Category> categories = new ConcurrentHashMap<>();
+
+    // 快照对应的目录版本号
+    private volatile long loadedVersion = -1;
+    // 快照每次清空或刷新时递增，按需加载期间发生变化的结果不写入快照
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 根据id查询菜品
+     * @param id
+     * @return
+     */
+    public Dish getDish(Long id) {
+        return get(dishes, id, dishMapper::getById);
+    }
+
+    /**
+     * 根据菜品id查询口味
+     * @param dishId
+     * @return
+     */
+    public List<DishFlavor> getFlavors(Long dishId) {
+        return get(flavors, dishId, dishFlavorMapper::getByDishId);
+    }
+
+    /**
+     * 根据id查询套餐
+     * @param id
+     * @return
+     */
+    public Setmeal getSetmeal(Long id) {
+        return get(setmeals, id, setmealMapper::getById);
+    }
+
+    /**
+     * 根据id查询分类
+     * @param id
+     * @return
+     */
+    public Category getCategory(Long id) {
+        return get(categories, id, categoryMapper::getById);
+    }
+
+    /**
+     * 菜品被新增、修改、删除后刷新菜品及其口味
+     * @param ids
+     * @param flavorsChanged 口味是否也被修改，启售停售时为false
+     */
+    public void refreshDishes(List<Long> ids, boolean flavorsChanged) {
+        List<String> changes = new ArrayList<>();
+        ids.forEach(id -> {
+            changes.add(CatalogChangeVO.DISH + "_" + id);
+            if (flavorsChanged) {
+                changes.add(CatalogChangeVO.FLAVOR + "_" + id);
+            }
+        });
+        refresh(dishCache::evictAll, () -> ids.forEach(id -> {
+            reload(dishes, id, dishMapper::getById);
+            reload(flavors, id, dishFlavorMapper::getByDishId);
+        }), changes);
+    }
+
+    /**
+     * 套餐被新增、修改、删除后刷新套餐
+     * @param ids
+     */
+    public void refreshSetmeals(List<Long> ids) {
+        List<String> changes = new ArrayList<>();
+        ids.forEach(id -> changes.add(CatalogChangeVO.SETMEAL + "_" + id));
+        refresh(setmealCache::evictAll, () -> ids.forEach(id -> reload(setmeals, id, setmealMapper::getById)), changes);
+    }
+
+    /**
+     * 分类被新增、修改、删除后刷新分类
+     * @param id
+     */
+    public void refreshCategory(Long id) {
+        refresh(() -> { }, () -> reload(categories, id, categoryMapper::getById),
+                Collections.singletonList(CatalogChangeVO.CATEGORY + "_" + id));
+    }
+
+    /**
+     * 快照条目数
+     * @return
+     */
+    public int size() {
+        return dishes.size() + setmeals.size() + categories.size();
+    }
+
+    /**
+     * 查询快照，未命中时从数据库加载
+     * @param map
+     * @param id
+     * @param loader
+     * @return
+     */
+    private <T> T get(Map<Long, T> map, Long id, Function<Long, T> loader) {
+        checkVersion();
+
+        T value = map.get(id);
+        if (value != null) {
+            return value;
+        }
+
+        long gen = generation.get();
+        value = loader.apply(id);
+        // 加载期间快照被清空或刷新过，加载结果可能已过期，只返回不写入
+        if (value != null && gen == generation.get()) {
+            map.putIfAbsent(id, value);
+        }
+        return value;
+    }
+
+    /**
+     * 版本号变化说明其他节点修改了目录，清空快照
+     */
+    private void checkVersion() {
+        long version = catalogVersion.current();
+        if (version == loadedVersion) {
+            return;
+        }
+
+        synchronized (this) {
+            if (version == loadedVersion) {
+                return;
+            }
+            generation.incrementAndGet();
+            dishes.clear();
+            flavors.clear();
+            setmeals.clear();
+            categories.clear();
+            loadedVersion = version;
+            log.info("商品目录版本变化，清空快照：{}", version);
+        }
+    }
+
+    /**
+     * 在事务中修改目录时，事务提交后才刷新，事务回滚时不记录变更
+     * 先清理由目录生成的缓存再递增版本号：其他节点看到新版本号时，缓存已经清理
+     * @param evict 清理由目录生成的缓存
+     * @param action 刷新快照中被修改的条目
+     * @param changes 变更的条目
+     */
+    private void refresh(Runnable evict, Runnable action, List<String> changes) {
+        Runnable task = () -> {
+            evict.run();
+            refreshAndIncrement(action, changes);
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 刷新本节点快照中被修改的条目，并递增版本号通知其他节点
+     * 递增前快照已是最新版本时，刷新后仍与新版本一致，不需要清空
+     * @param action
+     * @param changes
+     */
+    private synchronized void refreshAndIncrement(Runnable action, List<String> changes) {
+        generation.incrementAndGet();
+        action.run();
+        long version = catalogVersion.increment(changes);
+        if (version == loadedVersion + 1) {
+            loadedVersion = version;
+        }
+    }
+
+    /**
+     * 从数据库重新加载一个条目，已删除时从快照中移除
+     * @param map
+     * @param id
+     * @param loader
+     */
+    private <T> void reload(Map<Long, T> map, Long id, Function<Long, T> loader) {
+        T value = loader.apply(id);
+        if (value == null) {
+            map.remove(id);
+        } else {
+            map.put(id, value);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.sky.cache;
+
+import com.sky.properties.CatalogProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 商品目录版本号和变更日志
+ * 版本号保存在redis中，管理端修改菜品、套餐、分类时递增；读取时在本地缓存一个校验间隔，
+ * 间隔内的读取不访问redis
+ * 变更日志是以递增后的版本号为分数的有序集合，成员为 类型_id，同一条目再次修改时只更新分数，
+ * 条目数超过上限时移除最早的变更，并记录被移除的最大序号，早于该序号的客户端需要全量重新加载
+ */
+@Component
+public class CatalogVersion {
+
+    // redis中目录版本号的key
+    public static final String VERSION_KEY = "CATALOG_VERSION";
+    // redis中目录变更日志的key
+    public static final String CHANGES_KEY = "CATALOG_CHANGES";
+    // 变更日志中已被移除的最大序号
+    public static final String FLOOR_KEY = "CATALOG_CHANGES_FLOOR";
+    // 本地缓存版本号的时间（毫秒）
+    private static final long CHECK_MILLIS = 1000;
+
+    // 递增版本号并以新版本号记录变更，超过上限时移除最早的变更，返回递增后的版本号
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('INCR', KEYS[1]) " +
+            "for i = 2, #ARGV do redis.call('ZADD', KEYS[2], v, ARGV[i]) end " +
+            "local n = redis.call('ZCARD', KEYS[2]) - tonumber(ARGV[1]) " +
+            "if n > 0 then " +
+            "  local last = redis.call('ZRANGE', KEYS[2], n - 1, n - 1, 'WITHSCORES') " +
+            "  redis.call('SET', KEYS[3], last[2]) " +
+            "  redis.call('ZREMRANGEBYRANK', KEYS[2], 0, n - 1) " +
+            "end " +
+            "return v", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private CatalogProperties catalogProperties;
+
+    private volatile long version = -1;
+    private volatile long checkedAt;
+
+    /**
+     * 当前版本号，校验间隔内返回本地缓存的值
+     * @return
+     */
+    public long current() {
+        long now = System.currentTimeMillis();
+        if (version >= 0 && now - checkedAt < CHECK_MILLIS) {
+            return version;
+        }
+
+        version = getLong(VERSION_KEY);
+        checkedAt = now;
+        return version;
+    }
+
+    /**
+     * 递增版本号并记录变更，通知其他节点和客户端目录已变化
+     * @param changes 变更的条目，格式为 类型_id
+     * @return 递增后的版本号
+     */
+    public long increment(Collection<String> changes) {
+        List<String> args = new ArrayList<>(changes.size() + 1);
+        args.add(String.valueOf(catalogProperties.getChangeLogSize()));
+        args.addAll(changes);
+
+        Long value = stringRedisTemplate.execute(INCREMENT_SCRIPT,
+                Arrays.asList(VERSION_KEY, CHANGES_KEY, FLOOR_KEY), args.toArray());
+        version = value == null ? 0 : value;
+        checkedAt = System.currentTimeMillis();
+        return version;
+    }
+
+    /**
+     * 查询序号大于since的变更，按序号排列
+     * @param since
+     * @param limit 最多返回的条目数
+     * @return 条目 -> 序号
+     */
+    public Map<String, Long> changesSince(long since, int limit) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .rangeByScoreWithScores(CHANGES_KEY, since + 1, Double.POSITIVE_INFINITY, 0, limit);
+
+        Map<String, Long> changes = new LinkedHashMap<>();
+        if (tuples != null) {
+            tuples.forEach(tuple -> changes.put(tuple.getValue(), tuple.getScore().longValue()));
+        }
+        return changes;
+    }
+
+    /**
+     * 变更日志中已被移除的最大序号，须在查询变更之后读取：
+     * 查询期间发生的移除也会反映在返回值中
+     * @return
+     */
+    public long floor() {
+        return getLong(FLOOR_KEY);
+    }
+
+    /**
+     * 从redis读取最新版本号，不使用本地缓存
+     * @return
+     */
+    public long latest() {
+        return getLong(VERSION_KEY);
+    }
+
+    private long getLong(String key) {
+        String value = stringRedisTemplate.opsForValue().get(key);
+        return value == null ? 0 : Long.parseLong(value);
+    }
+}
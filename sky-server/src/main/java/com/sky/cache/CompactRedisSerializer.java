@@ -0,0 +1,104 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import com.sky.json.JacksonObjectMapper;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * redis缓存值的序列化器
+ * 默认写入带类型信息的smile（二进制json），重复的属性名和类名只写一次，比jdk序列化体积小、速度快；
+ * 读取时按开头的字节识别格式：smile以 ":)\n" 开头，jdk序列化以魔数 0xACED 开头，其余按json读取，
+ * 切换写入格式前写入的缓存不需要清理
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    public static final String SMILE = "smile";
+    public static final String JSON = "json";
+    public static final String JDK = "jdk";
+
+    private final String format;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper jsonMapper;
+    private final JdkSerializationRedisSerializer jdkSerializer;
+
+    /**
+     * @param format 写入格式：smile、json或jdk
+     * @param classLoader 读取jdk格式时使用的类加载器
+     */
+    public CompactRedisSerializer(String format, ClassLoader classLoader) {
+        if (!SMILE.equals(format) && !JSON.equals(format) && !JDK.equals(format)) {
+            throw new IllegalArgumentException("不支持的缓存值序列化方式：" + format);
+        }
+        this.format = format;
+        this.smileMapper = createMapper(new SmileFactory()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES));
+        this.jsonMapper = createMapper(null);
+        this.jdkSerializer = new JdkSerializationRedisSerializer(classLoader);
+    }
+
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (JDK.equals(format)) {
+            return jdkSerializer.serialize(value);
+        }
+        try {
+            return (SMILE.equals(format) ? smileMapper : jsonMapper).writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("序列化缓存值失败：" + e.getMessage(), e);
+        }
+    }
+
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length > 1 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        try {
+            if (bytes.length > 2 && bytes[0] == ':' && bytes[1] == ')' && bytes[2] == '\n') {
+                return smileMapper.readValue(bytes, Object.class);
+            }
+            return jsonMapper.readValue(bytes, Object.class);
+        } catch (Exception e) {
+            throw new SerializationException("反序列化缓存值失败：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 沿用项目的对象映射器配置，并写入非final类型的类名
+     * @param factory
+     * @return
+     */
+    private static ObjectMapper createMapper(SmileFactory factory) {
+        ObjectMapper mapper = new JacksonObjectMapper(factory);
+        // 项目的日期时间格式只保留到分钟，缓存中保留完整精度，避免缓存前后的值不一致
+        mapper.registerModule(new SimpleModule()
+                .addSerializer(LocalDateTime.class, new LocalDateTimeSerializer(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .addDeserializer(LocalDateTime.class, new LocalDateTimeDeserializer(DateTimeFormatter.ISO_LOCAL_DATE_TIME)));
+        // 只允许反序列化项目和jdk中的类型
+        mapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder()
+                        .allowIfSubType("com.sky.")
+                        .allowIfSubType("java.util.")
+                        .allowIfSubType("java.lang.")
+                        .allowIfSubType("java.math.")
+                        .allowIfSubType("java.time.")
+                        .build(),
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return mapper;
+    }
+}
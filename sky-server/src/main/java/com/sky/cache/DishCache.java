@@ -0,0 +1,274 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.NearCacheProperties;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * C端菜品缓存：进程内近端缓存 + redis 两级缓存
+ * 近端缓存以分类id为key，记录写入时对应的版本号；版本号保存在redis中，管理端修改菜品时递增，
+ * 各节点在校验间隔到期后比对版本号，不一致则丢弃近端缓存重新加载
+ * 校验版本号时同时读取商品目录版本号：调用方按某个目录版本号生成响应时，只有在不低于该目录版本号时校验过的
+ * 近端缓存才能直接使用，否则立即重新校验，避免用目录版本号递增之前的菜品生成新版本号的响应
+ * redis中的值同样带有加载时的版本号，与当前版本号不一致的值视为未命中，
+ * 修改提交之前开始的加载在清理之后写回的旧数据不会被读取
+ */
+@Component
+@Slf4j
+public class DishCache {
+
+    // redis中菜品缓存的key前缀，dish_{categoryId}
+    public static final String KEY_PREFIX = "dish_";
+    // 所有分类共用的版本号，批量修改菜品时递增
+    public static final String VERSION_KEY = "DISH_VERSION";
+    // 单个分类的版本号前缀，DISH_VERSION_{categoryId}
+    public static final String CATEGORY_VERSION_PREFIX = "DISH_VERSION_";
+    // 菜品缓存在标签索引中的标签
+    public static final String TAG = "dish";
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private NearCacheProperties nearCacheProperties;
+    @Autowired
+    private CacheTagIndex cacheTagIndex;
+
+    private Cache<Long, Entry> nearCache;
+
+    // 命中近端缓存的次数
+    private final LongAdder nearHits = new LongAdder();
+    // 近端未命中、命中redis的次数
+    private final LongAdder redisHits = new LongAdder();
+    // 两级缓存均未命中、查询数据库的次数
+    private final LongAdder misses = new LongAdder();
+    // 因版本号变化而丢弃的近端缓存条目数
+    private final LongAdder staleEvictions = new LongAdder();
+    // 管理端修改菜品触发的主动清理次数
+    private final LongAdder invalidations = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheProperties.getMaximumSize())
+                .expireAfterWrite(nearCacheProperties.getExpireAfterWriteSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        cacheTagIndex.register(TAG, KEY_PREFIX + "*");
+    }
+
+    /**
+     * 根据分类id查询菜品缓存，两级缓存都未命中时调用loader查询数据库并回填
+     * @param categoryId
+     * @param catalogVersion 调用方生成响应时使用的商品目录版本号
+     * @param loader
+     * @return
+     */
+    public List<DishVO> get(Long categoryId, long catalogVersion, Supplier<List<DishVO>> loader) {
+        return getAll(Collections.singletonList(categoryId), catalogVersion,
+                ids -> Collections.singletonMap(categoryId, loader.get())).get(categoryId);
+    }
+
+    /**
+     * 批量查询多个分类的菜品缓存：版本号和redis缓存各一次mget，两级缓存都未命中的分类一次交给loader查询
+     * @param categoryIds
+     * @param catalogVersion 调用方生成响应时使用的商品目录版本号
+     * @param loader 查询未命中分类的菜品，返回 分类id -> 菜品
+     * @return 分类id -> 菜品
+     */
+    public Map<Long, List<DishVO>> getAll(List<Long> categoryIds, long catalogVersion,
+                                          Function<List<Long>, Map<Long, List<DishVO>>> loader) {
+        long now = System.currentTimeMillis();
+        Map<Long, List<DishVO>> result = new LinkedHashMap<>();
+
+        // 校验间隔内、且校验时的目录版本号不低于调用方的版本号时，直接使用近端缓存
+        List<Long> unchecked = new ArrayList<>();
+        for (Long categoryId : categoryIds) {
+            Entry entry = nearCache.getIfPresent(categoryId);
+            if (entry != null && entry.catalogVersion >= catalogVersion
+                    && now - entry.checkedAt < nearCacheProperties.getVersionCheckMillis()) {
+                nearHits.increment();
+                result.put(categoryId, entry.value);
+            } else {
+                unchecked.add(categoryId);
+            }
+        }
+        if (unchecked.isEmpty()) {
+            return result;
+        }
+
+        // 一次读取目录版本号、全局版本号和所有分类的版本号，版本号一致的近端缓存续期
+        Versions versions = currentVersions(unchecked);
+        List<Long> missing = new ArrayList<>();
+        for (Long categoryId : unchecked) {
+            Entry entry = nearCache.getIfPresent(categoryId);
+            if (entry != null) {
+                if (entry.version.equals(versions.get(categoryId))) {
+                    entry.check(now, versions.catalogVersion);
+                    nearHits.increment();
+                    result.put(categoryId, entry.value);
+                    continue;
+                }
+                staleEvictions.increment();
+                nearCache.invalidate(categoryId);
+            }
+            missing.add(categoryId);
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        // 近端缓存失效的分类一次mget查询redis，只使用与当前版本号一致的值
+        List<String> keys = missing.stream().map(id -> KEY_PREFIX + id).collect(Collectors.toList());
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        List<Long> loadIds = new ArrayList<>();
+        for (int i = 0; i < missing.size(); i++) {
+            List<DishVO> list = VersionedValue.valuesIfCurrent(values == null ? null : values.get(i),
+                    versions.get(missing.get(i)), DishVO.class);
+            if (list != null) {
+                redisHits.increment();
+                result.put(missing.get(i), list);
+            } else {
+                loadIds.add(missing.get(i));
+            }
+        }
+
+        // redis中也不存在的分类一次查询数据库，以查询之前读到的版本号缓存到redis中
+        if (!loadIds.isEmpty()) {
+            misses.add(loadIds.size());
+            Map<Long, List<DishVO>> loaded = loader.apply(loadIds);
+            Map<String, VersionedValue<DishVO>> writes = new LinkedHashMap<>();
+            for (Long categoryId : loadIds) {
+                List<DishVO> list = loaded.getOrDefault(categoryId, new ArrayList<>());
+                writes.put(KEY_PREFIX + categoryId, new VersionedValue<>(versions.get(categoryId), list));
+                result.put(categoryId, list);
+            }
+            redisTemplate.opsForValue().multiSet(writes);
+            cacheTagIndex.tagAll(TAG, writes.keySet());
+        }
+
+        // 使用查询之前读到的版本号
+        missing.forEach(categoryId -> nearCache.put(categoryId,
+                new Entry(versions.get(categoryId), result.get(categoryId), now, versions.catalogVersion)));
+        return result;
+    }
+
+    /**
+     * 清理某个分类的菜品缓存
+     * @param categoryId
+     */
+    public void evict(Long categoryId) {
+        stringRedisTemplate.opsForValue().increment(CATEGORY_VERSION_PREFIX + categoryId);
+        redisTemplate.delete(KEY_PREFIX + categoryId);
+        cacheTagIndex.untag(TAG, KEY_PREFIX + categoryId);
+        nearCache.invalidate(categoryId);
+        invalidations.increment();
+    }
+
+    /**
+     * 清理所有分类的菜品缓存
+     */
+    public void evictAll() {
+        stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        // 按标签删除登记过的菜品缓存，不扫描键空间
+        cacheTagIndex.invalidate(TAG);
+        nearCache.invalidateAll();
+        invalidations.increment();
+    }
+
+    /**
+     * 缓存统计数据，用于评估近端缓存的容量
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", nearCache.estimatedSize());
+        stats.put("nearHits", nearHits.sum());
+        stats.put("redisHits", redisHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("staleEvictions", staleEvictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        // 因容量或过期时间被淘汰的条目数
+        stats.put("evictions", nearCache.stats().evictionCount());
+        return stats;
+    }
+
+    /**
+     * 一次查询目录版本号和多个分类当前的版本号，分类的版本号由全局版本号和分类版本号组成
+     * 清理菜品缓存先于递增目录版本号，读到的目录版本号之前的修改都已反映在同时读到的分类版本号中
+     * @param categoryIds
+     * @return
+     */
+    private Versions currentVersions(List<Long> categoryIds) {
+        List<String> keys = new ArrayList<>(categoryIds.size() + 2);
+        keys.add(CatalogVersion.VERSION_KEY);
+        keys.add(VERSION_KEY);
+        categoryIds.forEach(id -> keys.add(CATEGORY_VERSION_PREFIX + id));
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+
+        Versions versions = new Versions();
+        versions.catalogVersion = values == null || values.get(0) == null ? 0 : Long.parseLong(values.get(0));
+        String global = values == null || values.get(1) == null ? "0" : values.get(1);
+        for (int i = 0; i < categoryIds.size(); i++) {
+            String category = values == null || values.get(i + 2) == null ? "0" : values.get(i + 2);
+            versions.categories.put(categoryIds.get(i), global + "." + category);
+        }
+        return versions;
+    }
+
+    /**
+     * 一次读取的版本号
+     */
+    private static class Versions {
+        private long catalogVersion;
+        // 分类id -> 版本号
+        private final Map<Long, String> categories = new LinkedHashMap<>();
+
+        String get(Long categoryId) {
+            return categories.get(categoryId);
+        }
+    }
+
+    /**
+     * 近端缓存条目
+     */
+    private static class Entry {
+        private final String version;
+        private final List<DishVO> value;
+        // 最近一次校验版本号的时间
+        private volatile long checkedAt;
+        // 最近一次校验时读到的目录版本号
+        private volatile long catalogVersion;
+
+        Entry(String version, List<DishVO> value, long checkedAt, long catalogVersion) {
+            this.version = version;
+            this.value = value;
+            this.checkedAt = checkedAt;
+            this.catalogVersion = catalogVersion;
+        }
+
+        void check(long checkedAt, long catalogVersion) {
+            this.catalogVersion = catalogVersion;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.interceptor.CatalogETagInterceptor;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.properties.NearCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 用户端商品目录接口的响应缓存
+ * 缓存序列化后的json字节和gzip压缩后的字节，条目标记生成时的目录版本号，版本号变化后重新生成；
+ * 命中时直接把字节写入响应，不再反序列化缓存对象，也不再序列化json
+ * 生成响应时把版本号传给loader，loader按该版本号读取经过版本校验的数据；条目同时按写入时间过期，
+ * 即使版本号未能如期递增，缓存的响应也不会无限期保留
+ * ETag取自实际写出的条目的版本号，If-None-Match与之一致时响应304，ETag始终描述返回的内容
+ */
+@Component
+@Slf4j
+public class ResponseCache {
+
+    // 小于此长度的响应不压缩（字节）
+    private static final int GZIP_MIN_LENGTH = 1024;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+    @Autowired
+    private JacksonObjectMapper jacksonObjectMapper;
+    @Autowired
+    private NearCacheProperties nearCacheProperties;
+
+    private Cache<String, Entry> cache;
+
+    // 命中的次数
+    private final LongAdder hits = new LongAdder();
+    // 未命中或版本号变化、重新生成的次数
+    private final LongAdder misses = new LongAdder();
+    // 以gzip格式写出的次数
+    private final LongAdder gzipWrites = new LongAdder();
+    // 与缓存条目的ETag一致、响应304的次数
+    private final LongAdder notModified = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(nearCacheProperties.getMaximumSize())
+                .expireAfterWrite(nearCacheProperties.getExpireAfterWriteSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 把缓存的响应写入response，未命中或目录版本号变化时调用loader生成响应对象并缓存
+     * @param request
+     * @param response
+     * @param key
+     * @param loader 按传入的目录版本号返回响应对象，如Result
+     * @throws IOException
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, String key,
+                      LongFunction<Object> loader) throws IOException {
+        // 在生成响应之前读取版本号，生成期间发生的修改会使条目在下次读取时失效
+        long version = catalogVersion.current();
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.version == version) {
+            hits.increment();
+        } else {
+            misses.increment();
+            entry = build(version, loader.apply(version));
+            // 并发生成时保留版本号较新的条目，读到旧版本号的请求不会覆盖已生成的新版本
+            cache.asMap().merge(key, entry, (old, built) -> built.version >= old.version ? built : old);
+        }
+
+        // 覆盖拦截器按请求开始时的版本号设置的ETag
+        String etag = CatalogETagInterceptor.etag(entry.version);
+        response.setHeader("ETag", etag);
+        response.setHeader("Vary", "Accept-Encoding");
+        if (CatalogETagInterceptor.matches(request.getHeader("If-None-Match"), etag)) {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType("application/json;charset=UTF-8");
+        byte[] body = entry.json;
+        if (entry.gzip != null && acceptsGzip(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            body = entry.gzip;
+            gzipWrites.increment();
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * 缓存指标
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.estimatedSize());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("gzipWrites", gzipWrites.sum());
+        stats.put("notModified", notModified.sum());
+        return stats;
+    }
+
+    /**
+     * 序列化响应对象，较大的响应同时生成gzip压缩的版本
+     * @param version
+     * @param value
+     * @return
+     * @throws IOException
+     */
+    private Entry build(long version, Object value) throws IOException {
+        byte[] json = jacksonObjectMapper.writeValueAsBytes(value);
+        byte[] gzip = null;
+        if (json.length >= GZIP_MIN_LENGTH) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+                gzipOut.write(json);
+            }
+            gzip = out.toByteArray();
+        }
+        return new Entry(version, json, gzip);
+    }
+
+    private boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class Entry {
+        private final long version;
+        private final byte[] json;
+        private final byte[] gzip;
+
+        private Entry(long version, byte[] json, byte[] gzip) {
+            this.version = version;
+            this.json = json;
+            this.gzip = gzip;
+        }
+    }
+}
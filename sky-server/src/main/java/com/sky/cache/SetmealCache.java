@@ -0,0 +1,93 @@
+package com.sky.cache;
+
+import com.sky.config.RedisConfiguration;
+import com.sky.entity.Setmeal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.cache.CacheKeyPrefix;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * C端按分类缓存的起售套餐，key为 setmealCache::list_{categoryId}，登记在套餐缓存的标签下
+ * 缓存的值带有加载前读到的版本号，管理端修改套餐时先递增版本号再清理缓存，
+ * 与当前版本号不一致的值视为未命中，修改提交之前开始的加载在清理之后写回的旧数据不会被读取
+ * 套餐修改后清理所有分类的缓存，所有分类共用一个版本号
+ */
+@Component
+public class SetmealCache {
+
+    // redis中套餐缓存的key前缀，setmealCache::list_{categoryId}
+    public static final String KEY_PREFIX = CacheKeyPrefix.simple().compute(RedisConfiguration.SETMEAL_CACHE)
+            + RedisConfiguration.SETMEAL_LIST_KEY_PREFIX;
+    // 套餐缓存的版本号，修改套餐时递增
+    public static final String VERSION_KEY = "SETMEAL_VERSION";
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private CacheTagIndex cacheTagIndex;
+
+    /**
+     * 批量查询多个分类的套餐缓存：版本号和缓存各读取一次，未命中的分类一次交给loader查询并回填
+     * @param categoryIds
+     * @param loader 查询未命中分类的套餐，返回 分类id -> 套餐
+     * @return 分类id -> 套餐
+     */
+    public Map<Long, List<Setmeal>> getAll(List<Long> categoryIds, Function<List<Long>, Map<Long, List<Setmeal>>> loader) {
+        Map<Long, List<Setmeal>> result = new LinkedHashMap<>();
+        if (categoryIds.isEmpty()) {
+            return result;
+        }
+
+        // 在查询之前读取版本号，查询期间发生的修改会使回填的值失效
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        if (version == null) {
+            version = "0";
+        }
+
+        List<String> keys = categoryIds.stream().map(id -> KEY_PREFIX + id).collect(Collectors.toList());
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < categoryIds.size(); i++) {
+            List<Setmeal> list = VersionedValue.valuesIfCurrent(values == null ? null : values.get(i), version, Setmeal.class);
+            if (list != null) {
+                result.put(categoryIds.get(i), list);
+            } else {
+                missing.add(categoryIds.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        // 未命中的分类一次查询数据库，以查询之前读到的版本号回填
+        Map<Long, List<Setmeal>> loaded = loader.apply(missing);
+        Map<String, VersionedValue<Setmeal>> writes = new LinkedHashMap<>();
+        for (Long categoryId : missing) {
+            List<Setmeal> list = loaded.getOrDefault(categoryId, new ArrayList<>());
+            writes.put(KEY_PREFIX + categoryId, new VersionedValue<>(version, list));
+            result.put(categoryId, list);
+        }
+        redisTemplate.opsForValue().multiSet(writes);
+        cacheTagIndex.tagAll(RedisConfiguration.SETMEAL_CACHE, writes.keySet());
+        return result;
+    }
+
+    /**
+     * 清理所有分类的套餐缓存，先递增版本号，清理之后写回的旧值也不会被读取
+     */
+    public void evictAll() {
+        stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        cacheTagIndex.invalidate(RedisConfiguration.SETMEAL_CACHE);
+    }
+}
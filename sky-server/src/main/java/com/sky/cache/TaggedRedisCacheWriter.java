@@ -0,0 +1,69 @@
+package com.sky.cache;
+
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * 带标签索引的RedisCacheWriter
+ * 以缓存名称作为标签登记写入的key，@CacheEvict(allEntries = true) 时按标签删除，
+ * 替代默认实现中基于keys命令的清理
+ */
+public class TaggedRedisCacheWriter implements RedisCacheWriter {
+
+    private final RedisCacheWriter delegate;
+    private final CacheTagIndex cacheTagIndex;
+
+    public TaggedRedisCacheWriter(RedisCacheWriter delegate, CacheTagIndex cacheTagIndex) {
+        this.delegate = delegate;
+        this.cacheTagIndex = cacheTagIndex;
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        delegate.put(name, key, value, ttl);
+        cacheTagIndex.tag(name, new String(key, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return delegate.get(name, key);
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        byte[] existing = delegate.putIfAbsent(name, key, value, ttl);
+        cacheTagIndex.tag(name, new String(key, StandardCharsets.UTF_8));
+        return existing;
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+        cacheTagIndex.untag(name, new String(key, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        // 缓存名称即标签，只删除登记过的key
+        cacheTagIndex.invalidate(name);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new TaggedRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), cacheTagIndex);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+}
@@ -0,0 +1,51 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * redis中按分类缓存的列表，带有加载前读到的版本号
+ * 读取时版本号与当前版本号不一致的值视为未命中，修改提交之前开始的加载在清理之后写回的旧数据不会被读取
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionedValue<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String version;
+
+    private List<T> values;
+
+    /**
+     * 缓存的值是当前版本且元素类型正确时返回列表，否则返回null
+     * @param value redis中读到的值
+     * @param version 当前版本号
+     * @param type 元素类型
+     * @return
+     */
+    public static <T> List<T> valuesIfCurrent(Object value, String version, Class<T> type) {
+        if (!(value instanceof VersionedValue) || !version.equals(((VersionedValue<?>) value).getVersion())) {
+            return null;
+        }
+        List<?> values = ((VersionedValue<?>) value).getValues();
+        if (values == null) {
+            return null;
+        }
+
+        List<T> list = new ArrayList<>(values.size());
+        for (Object item : values) {
+            if (!type.isInstance(item)) {
+                return null;
+            }
+            list.add(type.cast(item));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,51 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+
+import java.util.List;
+
+/**
+ * 购物车存储
+ * 购物车中的商品由 用户id + 菜品id（含口味）/套餐id 唯一确定
+ */
+public interface CartStore {
+
+    /**
+     * 购物车中已存在该商品时数量加一
+     * @param shoppingCart
+     * @return 商品不存在时返回false
+     */
+    boolean increment(ShoppingCart shoppingCart);
+
+    /**
+     * 添加商品到购物车，商品已存在时累加数量
+     * @param shoppingCart
+     */
+    void add(ShoppingCart shoppingCart);
+
+    /**
+     * 购物车中商品数量减一，数量为1时删除该商品
+     * @param shoppingCart
+     * @return 商品不存在时返回false
+     */
+    boolean decrement(ShoppingCart shoppingCart);
+
+    /**
+     * 查询用户的购物车
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
+    /**
+     * 清空用户的购物车
+     * @param userId
+     */
+    void clean(Long userId);
+
+    /**
+     * 批量添加商品到购物车
+     * @param shoppingCartList
+     */
+    void addBatch(List<ShoppingCart> shoppingCartList);
+}
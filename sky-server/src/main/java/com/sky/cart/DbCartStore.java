@@ -0,0 +1,51 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 基于shopping_cart表的购物车存储
+ * 每次加减都是单条带条件的语句，依赖 sql/shopping_cart_unique_item.sql 中的唯一索引
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.cart", name = "store", havingValue = "db")
+public class DbCartStore implements CartStore {
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    public boolean increment(ShoppingCart shoppingCart) {
+        // update shopping_cart set number = number + 1 where user_id = ? and dish_id <=> ? ...
+        return shoppingCartMapper.incrementNumber(shoppingCart) > 0;
+    }
+
+    public void add(ShoppingCart shoppingCart) {
+        // 并发添加同一商品时由唯一索引合并为一行，数量累加
+        shoppingCartMapper.upsert(shoppingCart);
+    }
+
+    public boolean decrement(ShoppingCart shoppingCart) {
+        // 数量大于1时减一，否则删除数量为1的项，两条语句都带条件，不会出现并发覆盖
+        if (shoppingCartMapper.decrementNumber(shoppingCart) > 0) {
+            return true;
+        }
+        return shoppingCartMapper.deleteLastOne(shoppingCart) > 0;
+    }
+
+    public List<ShoppingCart> list(Long userId) {
+        return shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+    }
+
+    public void clean(Long userId) {
+        shoppingCartMapper.deleteByUserId(userId);
+    }
+
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+        shoppingCartMapper.insertBatch(shoppingCartList);
+    }
+}
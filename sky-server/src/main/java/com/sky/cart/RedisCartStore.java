@@ -0,0 +1,168 @@
+package com.sky.cart;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.ShoppingCart;
+import com.sky.properties.CartProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于redis的购物车存储，加减数量不访问数据库
+ * cart_{userId} 保存 商品 -> 数量，cart_item_{userId} 保存 商品 -> 名称、图片、单价等信息，
+ * 数量的增减由lua脚本原子完成；购物车只在下单时以订单明细的形式写入数据库
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.cart", name = "store", havingValue = "redis", matchIfMissing = true)
+public class RedisCartStore implements CartStore {
+
+    // 购物车商品数量的key前缀，cart_{userId}
+    public static final String COUNT_KEY_PREFIX = "cart_";
+    // 购物车商品信息的key前缀，cart_item_{userId}
+    public static final String ITEM_KEY_PREFIX = "cart_item_";
+
+    // 商品已存在时数量加一，返回加一后的数量，不存在时返回0
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+            "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], 1) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "redis.call('PEXPIRE', KEYS[2], ARGV[2]) " +
+            "return n", Long.class);
+
+    // 保存商品信息（已存在时保留原信息）并累加数量，返回累加后的数量
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HSETNX', KEYS[2], ARGV[1], ARGV[2]) " +
+            "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[3]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[4]) " +
+            "redis.call('PEXPIRE', KEYS[2], ARGV[4]) " +
+            "return n", Long.class);
+
+    // 数量大于1时减一并返回减一后的数量，等于1时删除商品并返回0，商品不存在时返回-1
+    private static final RedisScript<Long> DECREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local n = tonumber(redis.call('HGET', KEYS[1], ARGV[1])) " +
+            "if not n then return -1 end " +
+            "if n > 1 then " +
+            "  n = redis.call('HINCRBY', KEYS[1], ARGV[1], -1) " +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "  redis.call('PEXPIRE', KEYS[2], ARGV[2]) " +
+            "  return n " +
+            "end " +
+            "redis.call('HDEL', KEYS[1], ARGV[1]) " +
+            "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private CartProperties cartProperties;
+
+    public boolean increment(ShoppingCart shoppingCart) {
+        Long number = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys(shoppingCart.getUserId()),
+                field(shoppingCart), expireMillis());
+        return number != null && number > 0;
+    }
+
+    public void add(ShoppingCart shoppingCart) {
+        // 数量单独保存在cart_{userId}中，商品信息中不包含数量和用户id
+        ShoppingCart item = ShoppingCart.builder()
+                .name(shoppingCart.getName())
+                .image(shoppingCart.getImage())
+                .amount(shoppingCart.getAmount())
+                .dishId(shoppingCart.getDishId())
+                .setmealId(shoppingCart.getSetmealId())
+                .dishFlavor(shoppingCart.getDishFlavor())
+                .createTime(shoppingCart.getCreateTime())
+                .build();
+        int number = shoppingCart.getNumber() == null ? 1 : shoppingCart.getNumber();
+
+        stringRedisTemplate.execute(ADD_SCRIPT, keys(shoppingCart.getUserId()),
+                field(shoppingCart), JSON.toJSONString(item), String.valueOf(number), expireMillis());
+    }
+
+    public boolean decrement(ShoppingCart shoppingCart) {
+        Long number = stringRedisTemplate.execute(DECREMENT_SCRIPT, keys(shoppingCart.getUserId()),
+                field(shoppingCart), expireMillis());
+        return number != null && number >= 0;
+    }
+
+    public List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> countMap = stringRedisTemplate.opsForHash().entries(COUNT_KEY_PREFIX + userId);
+        if (countMap.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Object, Object> itemMap = stringRedisTemplate.opsForHash().entries(ITEM_KEY_PREFIX + userId);
+
+        List<ShoppingCart> list = new ArrayList<>(countMap.size());
+        countMap.forEach((field, number) -> {
+            Object json = itemMap.get(field);
+            if (json == null) {
+                return;
+            }
+            ShoppingCart shoppingCart = JSON.parseObject((String) json, ShoppingCart.class);
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(Integer.valueOf((String) number));
+            list.add(shoppingCart);
+        });
+
+        // 按加入购物车的时间排序，与按主键查询数据库的顺序一致
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        return list;
+    }
+
+    public void clean(Long userId) {
+        Runnable task = () -> stringRedisTemplate.delete(keys(userId));
+
+        // 在事务中清空时（如下单），事务提交后才删除，事务回滚时购物车保持不变
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+        shoppingCartList.forEach(this::add);
+    }
+
+    /**
+     * 购物车的数量key和商品信息key
+     * @param userId
+     * @return
+     */
+    private List<String> keys(Long userId) {
+        return Arrays.asList(COUNT_KEY_PREFIX + userId, ITEM_KEY_PREFIX + userId);
+    }
+
+    /**
+     * 商品在hash中的field，菜品为 dish_{dishId}_{口味}，套餐为 setmeal_{setmealId}
+     * @param shoppingCart
+     * @return
+     */
+    private String field(ShoppingCart shoppingCart) {
+        if (shoppingCart.getDishId() != null) {
+            String flavor = shoppingCart.getDishFlavor() == null ? "" : shoppingCart.getDishFlavor();
+            return "dish_" + shoppingCart.getDishId() + "_" + flavor;
+        }
+        return "setmeal_" + shoppingCart.getSetmealId();
+    }
+
+    private String expireMillis() {
+        return String.valueOf(TimeUnit.DAYS.toMillis(cartProperties.getExpireDays()));
+    }
+}
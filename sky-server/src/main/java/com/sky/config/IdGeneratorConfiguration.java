@@ -0,0 +1,31 @@
+package com.sky.config;
+
+import com.sky.properties.IdGeneratorProperties;
+import com.sky.task.WorkerIdLease;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 配置类，用于创建id生成器对象
+ */
+@Configuration
+@Slf4j
+public class IdGeneratorConfiguration {
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(IdGeneratorProperties idGeneratorProperties,
+                                                     WorkerIdLease workerIdLease) {
+        long workerId = idGeneratorProperties.getWorkerId();
+        if (workerId >= 0) {
+            log.info("开始创建id生成器，配置的节点id：{}", workerId);
+            return new SnowflakeIdGenerator(workerId);
+        }
+
+        // 未配置节点id时通过redis租约占用一个空闲的节点id，租约失效后停止生成
+        workerId = workerIdLease.acquire();
+        log.info("开始创建id生成器，租约分配的节点id：{}", workerId);
+        return new SnowflakeIdGenerator(workerId, workerIdLease::isValid);
+    }
+}
@@ -1,24 +1,78 @@
 package com.sky.config;
 
+import com.sky.cache.CacheTagIndex;
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.cache.TaggedRedisCacheWriter;
+import com.sky.properties.RedisValueProperties;
+import com.sky.properties.WebSocketProperties;
+import com.sky.websocket.WebSocketRelay;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 @Slf4j
 public class RedisConfiguration {
 
+    // spring cache 中套餐缓存的名称
+    public static final String SETMEAL_CACHE = "setmealCache";
+    // 套餐缓存中按分类查询起售套餐的key前缀，setmealCache::list_{categoryId}
+    public static final String SETMEAL_LIST_KEY_PREFIX = "list_";
+
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory){
+    public CompactRedisSerializer compactRedisSerializer(RedisValueProperties redisValueProperties){
+        log.info("开始创建redis缓存值序列化器：{}", redisValueProperties.getSerializer());
+        return new CompactRedisSerializer(redisValueProperties.getSerializer(), getClass().getClassLoader());
+    }
+
+    @Bean
+    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                       CompactRedisSerializer compactRedisSerializer){
         log.info("开始创建redis模板对象...");
         RedisTemplate redisTemplate = new RedisTemplate();
         // 设置redis连接工厂对象
         redisTemplate.setConnectionFactory(redisConnectionFactory);
         // 设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        // 设置redis value的序列化器
+        redisTemplate.setValueSerializer(compactRedisSerializer);
+        redisTemplate.setHashValueSerializer(compactRedisSerializer);
         return redisTemplate;
     }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                        WebSocketRelay webSocketRelay,
+                                                                        WebSocketProperties webSocketProperties){
+        log.info("开始创建redis消息监听容器...");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        // 订阅WebSocket消息转发频道，推送给本节点的会话
+        container.addMessageListener(webSocketRelay, new ChannelTopic(webSocketProperties.getRelayChannel()));
+        return container;
+    }
+
+    @Bean
+    public RedisCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, CacheTagIndex cacheTagIndex,
+                                          CompactRedisSerializer compactRedisSerializer){
+        log.info("开始创建redis缓存管理器...");
+        // 以缓存名称作为标签登记key，清空缓存时不再使用keys命令
+        cacheTagIndex.register(SETMEAL_CACHE, SETMEAL_CACHE + "::*");
+        RedisCacheWriter cacheWriter = new TaggedRedisCacheWriter(
+                RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory), cacheTagIndex);
+        return RedisCacheManager.builder(cacheWriter)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig()
+                        .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(compactRedisSerializer)))
+                .build();
+    }
 }
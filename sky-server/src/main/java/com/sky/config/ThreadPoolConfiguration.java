@@ -0,0 +1,49 @@
+package com.sky.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 配置类，创建业务使用的有界线程池
+ */
+@Configuration
+@Slf4j
+public class ThreadPoolConfiguration {
+
+    /**
+     * 报表导出并行查询数据使用的线程池，队列满时由调用线程执行，限制对数据库的并发压力
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor reportExecutor(){
+        log.info("开始创建报表导出线程池...");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(64);
+        executor.setThreadNamePrefix("report-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * WebSocket推送使用的线程池，任务只发起异步发送，不等待客户端；只有发送关闭帧会阻塞，最长为发送超时时间
+     * 有界队列未满时线程数不会超过核心线程数，因此核心线程数与最大线程数相同，空闲时回收
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor websocketExecutor(){
+        log.info("开始创建WebSocket推送线程池...");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(8);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("websocket-");
+        return executor;
+    }
+}
@@ -1,5 +1,6 @@
 package com.sky.config;
 
+import com.sky.interceptor.CatalogETagInterceptor;
 import com.sky.interceptor.JwtTokenAdminInterceptor;
 import com.sky.interceptor.JwtTokenUserInterceptor;
 import com.sky.json.JacksonObjectMapper;
@@ -35,6 +36,9 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
     @Autowired
     private JwtTokenUserInterceptor jwtTokenUserInterceptor;
 
+    @Autowired
+    private CatalogETagInterceptor catalogETagInterceptor;
+
     @Autowired
     private JacksonObjectMapper jacksonObjectMapper;
 
@@ -53,6 +57,11 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
                 .addPathPatterns("/user/**")
                 .excludePathPatterns("/user/user/login")
                 .excludePathPatterns("/user/shop/status");
+
+        // 用户端商品目录接口按目录版本号响应304
+        registry.addInterceptor(catalogETagInterceptor)
+                .addPathPatterns("/user/category/list", "/user/dish/list", "/user/setmeal/list", "/user/setmeal/dish/**",
+                        "/user/menu");
     }
 
     /**
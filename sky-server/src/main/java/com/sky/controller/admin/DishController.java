@@ -12,11 +12,9 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * 菜品管理
@@ -30,9 +28,6 @@ public class DishController {
     @Autowired
     private DishService dishService;
 
-    @Autowired
-    private RedisTemplate redisTemplate;
-
     /**
      * 新增菜品
      * @param dishDTO
@@ -44,10 +39,6 @@ public class DishController {
         log.info("新增菜品，{}", dishDTO);
         dishService.saveWithFlavor(dishDTO);
 
-        // 清理缓存数据
-        String key = "dish_" + dishDTO.getCategoryId();
-        cleanCache(key);
-
         return Result.success();
     }
 
@@ -74,9 +65,6 @@ public class DishController {
         log.info("菜品批量删除，{}", ids);
         dishService.deleteBatch(ids);
 
-        // 将所有菜品缓存数据清理掉，like "dish_%"
-        cleanCache("dish_*");
-
         return Result.success();
     }
 
@@ -103,9 +91,6 @@ public class DishController {
     public Result update(@RequestBody DishDTO dishDTO) {
         log.info("修改菜品");
         dishService.updateWithFlavor(dishDTO);
-
-        // 将所有菜品缓存数据清理掉，like "dish_%"
-        cleanCache("dish_*");
         return Result.success();
     }
 
@@ -120,9 +105,6 @@ public class DishController {
     public Result<String> startOrStop(@PathVariable Integer status, Long id){
         dishService.startOrStop(status,id);
 
-        // 将所有菜品缓存数据清理掉，like "dish_%"
-        cleanCache("dish_*");
-
         return Result.success();
     }
 
@@ -134,13 +116,4 @@ public class DishController {
         return Result.success(list);
     }
 
-    /**
-     * 清理某个特定模式的redis缓存
-     * @param pattern
-     */
-    private void cleanCache(String pattern){
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
-    }
-
 }
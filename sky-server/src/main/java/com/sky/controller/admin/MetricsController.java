@@ -0,0 +1,68 @@
+package com.sky.controller.admin;
+
+import com.sky.cache.DishCache;
+import com.sky.cache.ResponseCache;
+import com.sky.result.Result;
+import com.sky.task.TaskLeader;
+import com.sky.websocket.WebSocketServer;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 运行指标相关接口
+ */
+@RestController
+@RequestMapping("/admin/metrics")
+@Api(tags = "运行指标相关接口")
+@Slf4j
+public class MetricsController {
+
+    @Autowired
+    private DishCache dishCache;
+    @Autowired
+    private ResponseCache responseCache;
+    @Autowired
+    private WebSocketServer webSocketServer;
+    @Autowired
+    private TaskLeader taskLeader;
+
+    /**
+     * 查询菜品缓存命中情况
+     * @return
+     */
+    @GetMapping("/cache")
+    @ApiOperation("查询菜品缓存命中情况")
+    public Result<Map<String, Object>> cache() {
+        Map<String, Object> stats = dishCache.stats();
+        // 用户端商品目录接口的响应缓存
+        stats.put("response", responseCache.stats());
+        return Result.success(stats);
+    }
+
+    /**
+     * 查询WebSocket推送队列深度和发送耗时
+     * @return
+     */
+    @GetMapping("/websocket")
+    @ApiOperation("查询WebSocket推送情况")
+    public Result<Map<String, Object>> websocket() {
+        return Result.success(webSocketServer.stats());
+    }
+
+    /**
+     * 查询定时任务的主节点和执行情况
+     * @return
+     */
+    @GetMapping("/task")
+    @ApiOperation("查询定时任务执行情况")
+    public Result<Map<String, Object>> task() {
+        return Result.success(taskLeader.stats());
+    }
+}
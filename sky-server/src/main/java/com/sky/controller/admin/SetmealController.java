@@ -10,7 +10,6 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.*;
 
@@ -24,7 +23,6 @@ public class SetmealController {
 
     @Autowired
     private SetmealService setmealService;
-
     /**
      * 新增套餐
      * @param setmealDTO
@@ -32,7 +30,6 @@ public class SetmealController {
      */
     @PostMapping
     @ApiOperation("新增套餐")
-    @CacheEvict(cacheNames = "setmealCashe", key = "#setmealDTO.categoryId")
     public Result save(@RequestBody SetmealDTO setmealDTO){
         log.info("新增套餐，{}", setmealDTO);
         setmealService.saveWithDish(setmealDTO);
@@ -58,7 +55,6 @@ public class SetmealController {
      */
     @DeleteMapping
     @ApiOperation("批量删除套餐")
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result delelte(@RequestParam List<Long> ids){
         log.info("批量删除套餐，{}", ids);
         setmealService.deleteBatch(ids);
@@ -85,7 +81,6 @@ public class SetmealController {
      */
     @PutMapping
     @ApiOperation("更新套餐")
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result update(@RequestBody SetmealDTO setmealDTO){
         log.info("更新套餐，{}", setmealDTO);
         setmealService.update(setmealDTO);
@@ -94,7 +89,6 @@ public class SetmealController {
 
     @PostMapping("/status/{status}")
     @ApiOperation("套餐起售停售")
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result startOrStop(@PathVariable Integer status, Long id){
         log.info("套餐起售停售，{},{}", status, id);
         setmealService.startOrStop(status, id);
@@ -0,0 +1,35 @@
+package com.sky.controller.user;
+
+import com.sky.result.Result;
+import com.sky.service.CatalogService;
+import com.sky.vo.CatalogChangesVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController("userCatalogController")
+@RequestMapping("/user/catalog")
+@Api(tags = "C端-商品目录接口")
+@Slf4j
+public class CatalogController {
+
+    @Autowired
+    private CatalogService catalogService;
+
+    /**
+     * 增量同步商品目录，客户端保存返回的version，下次作为since传入
+     * @param since
+     * @return
+     */
+    @GetMapping("/changes")
+    @ApiOperation("增量同步商品目录")
+    public Result<CatalogChangesVO> changes(Long since) {
+        CatalogChangesVO changesVO = catalogService.changes(since);
+        log.info("增量同步商品目录：{} -> {}，变更{}条", since, changesVO.getVersion(), changesVO.getChanges().size());
+        return Result.success(changesVO);
+    }
+}
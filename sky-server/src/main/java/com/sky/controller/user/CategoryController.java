@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.cache.ResponseCache;
 import com.sky.entity.Category;
 import com.sky.result.Result;
 import com.sky.service.CategoryService;
@@ -9,6 +10,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 @RestController("userCategoryController")
@@ -18,6 +23,8 @@ public class CategoryController {
 
     @Autowired
     private CategoryService categoryService;
+    @Autowired
+    private ResponseCache responseCache;
 
     /**
      * 查询分类
@@ -25,9 +32,12 @@ public class CategoryController {
      * @return
      */
     @GetMapping("/list")
-    @ApiOperation("查询分类")
-    public Result<List<Category>> list(Integer type) {
-        List<Category> list = categoryService.list(type);
-        return Result.success(list);
+    @ApiOperation(value = "查询分类", response = Category.class, responseContainer = "List")
+    public void list(Integer type, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 直接写出缓存的响应字节，目录版本号变化后才重新查询
+        responseCache.write(request, response, "category_" + type, version -> {
+            List<Category> list = categoryService.list(type);
+            return Result.success(list);
+        });
     }
 }
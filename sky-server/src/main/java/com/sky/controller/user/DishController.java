@@ -1,19 +1,23 @@
 package com.sky.controller.user;
 
+import com.sky.cache.DishCache;
+import com.sky.cache.ResponseCache;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
 import com.sky.service.DishService;
-import com.sky.service.UserService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 @RestController("userDishController")
@@ -25,7 +29,10 @@ public class DishController {
     private DishService dishService;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private DishCache dishCache;
+
+    @Autowired
+    private ResponseCache responseCache;
 
     /**
      * 根据分类id查询菜品
@@ -34,28 +41,19 @@ public class DishController {
      * @return
      */
     @GetMapping("/list")
-    @ApiOperation("根据分类id查询菜品")
-    public Result<List<DishVO>> list(Long categoryId) {
-        // 构造redis中的key
-        String key = "dish_" + categoryId;
-
-        // 先查询redis中是否存在菜品数据
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
-        if (list != null && list.size() > 0) {
-            // 如果存在，直接返回，无须查询数据库
+    @ApiOperation(value = "根据分类id查询菜品", response = DishVO.class, responseContainer = "List")
+    public void list(Long categoryId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 直接写出缓存的响应字节，目录版本号变化后才重新生成
+        responseCache.write(request, response, "dish_" + categoryId, version -> {
+            // 依次查询近端缓存、redis，都不存在时查询数据库并回填；近端缓存须在该目录版本号之后校验过
+            List<DishVO> list = dishCache.get(categoryId, version, () -> {
+                Dish dish = new Dish();
+                dish.setCategoryId(categoryId);
+                dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
+                return dishService.listWithFlavor(dish);
+            });
             return Result.success(list);
-        }
-
-        // 如果不存在，查询数据库，并缓存到redis中
-        Dish dish = new Dish();
-        dish.setCategoryId(categoryId);
-        dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
-
-        // 缓存到redis中
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key, list);
-
-        return Result.success(list);
+        });
     }
 
 }
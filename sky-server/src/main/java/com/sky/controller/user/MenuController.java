@@ -0,0 +1,38 @@
+package com.sky.controller.user;
+
+import com.sky.cache.ResponseCache;
+import com.sky.result.Result;
+import com.sky.service.CatalogService;
+import com.sky.vo.MenuVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@RestController("userMenuController")
+@RequestMapping("/user/menu")
+@Api(tags = "C端-菜单接口")
+public class MenuController {
+
+    @Autowired
+    private CatalogService catalogService;
+    @Autowired
+    private ResponseCache responseCache;
+
+    /**
+     * 查询完整菜单，打开小程序时一次请求取代分类、菜品、套餐的逐个分类查询
+     * @return
+     */
+    @GetMapping
+    @ApiOperation(value = "查询完整菜单", response = MenuVO.class)
+    public void menu(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 直接写出缓存的响应字节，目录版本号变化后才按新版本号重新组装，菜单的版本号与缓存条目一致
+        responseCache.write(request, response, "menu", version -> Result.success(catalogService.menu(version)));
+    }
+}
@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
 import com.sky.mapper.OrderMapper;
@@ -7,12 +8,14 @@ import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
 import com.sky.vo.OrderPaymentVO;
+import com.sky.vo.OrderSubmitStatusVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 @RestController("userOrderController")
@@ -33,12 +36,29 @@ public class OrderController {
      */
     @PostMapping("/submit")
     @ApiOperation("用户下单")
-    public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO){
+    public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO,
+                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey){
         log.info("用户下单，参数为：{}", ordersSubmitDTO);
+        // 携带幂等键的请求进入异步下单队列，立即返回订单号
+        if (StringUtils.hasText(idempotencyKey)) {
+            return Result.success(orderService.submitOrderAsync(ordersSubmitDTO, idempotencyKey));
+        }
         OrderSubmitVO orderSubmitVO = orderService.submitOrder(ordersSubmitDTO);
         return Result.success(orderSubmitVO);
     }
 
+    /**
+     * 查询异步下单的结果
+     *
+     * @param orderNumber
+     * @return
+     */
+    @GetMapping("/submitStatus/{orderNumber}")
+    @ApiOperation("查询下单结果")
+    public Result<OrderSubmitStatusVO> submitStatus(@PathVariable String orderNumber){
+        return Result.success(orderService.getSubmitStatus(orderNumber));
+    }
+
     /**
      * 订单支付
      *
@@ -56,16 +76,15 @@ public class OrderController {
 
     /**
      * 分页查询历史订单
+     * 除page、pageSize、status外，可传入上一页最后一条订单的lastOrderTime、lastId按游标翻页，count=false时不查询总数
      *
-     * @param page
-     * @param pageSize
-     * @param status
+     * @param ordersPageQueryDTO
      * @return
      */
     @GetMapping("/historyOrders")
     @ApiOperation("分页查询历史订单")
-    public Result<PageResult> page(int page, int pageSize, Integer status){
-        PageResult pageResult = orderService.page(page, pageSize, status);
+    public Result<PageResult> page(OrdersPageQueryDTO ordersPageQueryDTO){
+        PageResult pageResult = orderService.page(ordersPageQueryDTO);
         return Result.success(pageResult);
     }
 
@@ -0,0 +1,82 @@
+package com.sky.interceptor;
+
+import com.sky.cache.CatalogVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 用户端商品目录接口的条件请求拦截器
+ * 以商品目录版本号作为ETag，请求头If-None-Match与当前版本一致时直接响应304，不再查询和返回目录数据
+ * 使用响应缓存的接口由ResponseCache按实际写出的缓存条目的版本号覆盖ETag，这里设置的ETag只用于其他接口
+ */
+@Component
+public class CatalogETagInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    /**
+     * 校验If-None-Match，并为响应设置ETag
+     *
+     * @param request
+     * @param response
+     * @param handler
+     * @return
+     * @throws Exception
+     */
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod) || !"GET".equals(request.getMethod())) {
+            return true;
+        }
+
+        // 在生成响应之前读取版本号，响应内容不会比ETag旧
+        String etag = etag(catalogVersion.current());
+        response.setHeader("ETag", etag);
+        // 客户端每次使用前都需要向服务端确认
+        response.setHeader("Cache-Control", "no-cache");
+
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 目录版本号对应的ETag，同一内容有压缩和未压缩两种编码，使用弱ETag
+     * @param version
+     * @return
+     */
+    public static String etag(long version) {
+        return "W/\"catalog-" + version + "\"";
+    }
+
+    /**
+     * If-None-Match中是否包含当前的ETag，可能是逗号分隔的多个值或 *
+     * @param ifNoneMatch
+     * @param etag
+     * @return
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        // 弱比较：忽略W/前缀
+        String opaque = etag.substring(2);
+        for (String value : ifNoneMatch.split(",")) {
+            value = value.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals(opaque)) {
+                return true;
+            }
+            if (value.startsWith("W/") && value.substring(2).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.sky.mapper;
+
+import com.sky.entity.BusinessDailyStat;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface BusinessDailyStatMapper {
+
+    /**
+     * 在某天的汇总数据上累加增量，当天数据不存在时插入
+     * @param delta
+     */
+    void increment(BusinessDailyStat delta);
+
+    /**
+     * 批量写入汇总数据，已存在的日期整行覆盖
+     * @param statList
+     */
+    void upsertBatch(List<BusinessDailyStat> statList);
+
+    /**
+     * 按日期顺序锁定汇总行，不存在的日期先插入空行再锁定
+     * @param dates 按升序排列
+     */
+    void lockByDate(List<LocalDate> dates);
+
+    /**
+     * 查询指定日期区间内的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<BusinessDailyStat> listByDate(LocalDate begin, LocalDate end);
+}
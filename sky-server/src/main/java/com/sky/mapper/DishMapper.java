@@ -88,4 +88,19 @@ public interface DishMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 根据id集合批量查询菜品
+     * @param ids
+     * @return
+     */
+    List<Dish> getByIds(List<Long> ids);
+
+    /**
+     * 查询多个分类下特定状态的菜品
+     * @param categoryIds
+     * @param status
+     * @return
+     */
+    List<Dish> listByCategoryIds(List<Long> categoryIds, Integer status);
 }
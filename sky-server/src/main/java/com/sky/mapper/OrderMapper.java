@@ -2,11 +2,15 @@ package com.sky.mapper;
 
 import com.github.pagehelper.Page;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrderDailyStatDTO;
+import com.sky.dto.OrderStatusCountDTO;
 import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.BusinessDailyStat;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -20,6 +24,12 @@ public interface OrderMapper {
      */
     void insert(Orders orders);
 
+    /**
+     * 批量插入订单，插入后回填每个订单的id
+     * @param ordersList
+     */
+    void insertBatch(List<Orders> ordersList);
+
     /**
      * 根据订单号查询订单
      * @param orderNumber
@@ -35,15 +45,33 @@ public interface OrderMapper {
 
 
     /**
-     * 通过订单号更新订单状态和支付时间
+     * 通过订单号更新仍处于待付款状态的订单的状态和支付时间，已被取消的订单不会被覆盖
      * @param orderStatus
      * @param orderPaidStatus
      * @param checkOutTime
      * @param orderNumber
+     * @return 实际修改的行数
      */
     @Update("update orders set status=#{orderStatus},pay_status=#{orderPaidStatus},checkout_time=#{checkOutTime} " +
-            "where number = #{orderNumber}")
-    void updateStatus(Integer orderStatus, Integer orderPaidStatus, LocalDateTime checkOutTime, String orderNumber);
+            "where number = #{orderNumber} and status = 1")
+    int updateStatus(Integer orderStatus, Integer orderPaidStatus, LocalDateTime checkOutTime, String orderNumber);
+
+    /**
+     * 查询指定状态的订单并加行锁，只查询汇总营业数据需要的字段
+     * @param ids
+     * @param status
+     * @return
+     */
+    List<Orders> getByIdsAndStatusForUpdate(List<Long> ids, Integer status);
+
+    /**
+     * 批量修改订单状态，只修改仍处于fromStatus的订单
+     * @param ids
+     * @param fromStatus
+     * @param orders 修改后的状态、取消原因、取消时间等
+     * @return 实际修改的行数
+     */
+    int updateStatusBatch(List<Long> ids, Integer fromStatus, Orders orders);
 
     /**
      * 分页查询历史订单
@@ -61,21 +89,23 @@ public interface OrderMapper {
     Orders getOrderById(Long id);
 
     /**
-     * 根据订单状态来统计数量
-     * @param status
+     * 按订单状态分组统计订单数
+     * @param begin 只统计此时间之后下单的订单，为null时统计全部订单
      * @return
      */
-    @Select("select count(*) from orders where status=#{status};")
-    Integer countByStatus(Integer status);
+    List<OrderStatusCountDTO> countGroupByStatus(LocalDateTime begin);
 
     /**
-     * 根据订单状态和下单时间来查询订单
+     * 根据订单状态和下单时间查询id大于afterId的订单id，按id升序，每次最多查询limit条
      * @param status
      * @param orderTime
+     * @param afterId 上一批最后一个订单的id，第一批传0
+     * @param limit
      * @return
      */
-    @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
-    List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime);
+    @Select("select id from orders where status = #{status} and order_time < #{orderTime} and id > #{afterId} " +
+            "order by id limit #{limit}")
+    List<Long> getIdsByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, long afterId, int limit);
 
     /**
      * 根据动态条件统计营业额数据
@@ -98,4 +128,36 @@ public interface OrderMapper {
      * @return
      */
     List<GoodsSalesDTO> getSalesTop10(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 统计指定时间区间内每个商品的销量和销售额
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesStatistics(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 流式查询指定时间区间内的订单，每读到一行回调一次handler，用于导出大量订单
+     * @param begin
+     * @param end
+     * @param handler
+     */
+    void streamByOrderTime(LocalDateTime begin, LocalDateTime end, ResultHandler<Orders> handler);
+
+    /**
+     * 按天分组统计指定时间区间内的订单总数、有效订单数和营业额
+     * @param begin 包含
+     * @param end 不包含
+     * @return
+     */
+    List<OrderDailyStatDTO> getDailyStatistics(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 按天分组汇总指定时间区间内的营业数据（各状态订单数、营业额）
+     * @param begin 包含
+     * @param end 不包含
+     * @return
+     */
+    List<BusinessDailyStat> getDailyBusinessStat(LocalDateTime begin, LocalDateTime end);
 }
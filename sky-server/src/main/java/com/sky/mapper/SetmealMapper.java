@@ -82,4 +82,19 @@ public interface SetmealMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 根据id集合批量查询套餐
+     * @param ids
+     * @return
+     */
+    List<Setmeal> getByIds(List<Long> ids);
+
+    /**
+     * 查询多个分类下特定状态的套餐
+     * @param categoryIds
+     * @param status
+     * @return
+     */
+    List<Setmeal> listByCategoryIds(List<Long> categoryIds, Integer status);
 }
@@ -4,7 +4,6 @@ import com.sky.entity.ShoppingCart;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
-import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -18,13 +17,6 @@ public interface ShoppingCartMapper {
      */
     List<ShoppingCart> list(ShoppingCart shoppingCart);
 
-    /**
-     * 根据数据项的id更新其数量
-     * @param cart
-     */
-    @Update("update shopping_cart set number = #{number} where id = #{id}")
-    void updateNumberById(ShoppingCart cart);
-
     /**
      * 插入一条数据项往购物车中
      * @param shoppingCart
@@ -46,9 +38,29 @@ public interface ShoppingCartMapper {
     void insertBatch(List<ShoppingCart> shoppingCartList);
 
     /**
-     * 根据id删除对应的购物车项
-     * @param id
+     * 购物车中已存在该商品时数量加一
+     * @param shoppingCart
+     * @return 更新的行数，为0表示商品不存在
+     */
+    int incrementNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 插入一条数据项，商品已存在时累加数量，依赖 (user_id, item_key) 唯一索引
+     * @param shoppingCart
+     */
+    void upsert(ShoppingCart shoppingCart);
+
+    /**
+     * 数量大于1时数量减一
+     * @param shoppingCart
+     * @return 更新的行数，为0表示商品不存在或数量为1
+     */
+    int decrementNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 数量为1时删除该商品
+     * @param shoppingCart
+     * @return 删除的行数
      */
-    @Delete("delete from shopping_cart where id=#{id};")
-    void deleteById(Long id);
+    int deleteLastOne(ShoppingCart shoppingCart);
 }
@@ -1,9 +1,12 @@
 package com.sky.mapper;
 
+import com.sky.dto.UserDailyStatDTO;
 import org.apache.ibatis.annotations.Mapper;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -37,4 +40,12 @@ public interface UserMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 按天分组统计指定时间区间内的新增用户数量
+     * @param begin 包含
+     * @param end 不包含
+     * @return
+     */
+    List<UserDailyStatDTO> getDailyNewUsers(LocalDateTime begin, LocalDateTime end);
 }
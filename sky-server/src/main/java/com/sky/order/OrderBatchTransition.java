@@ -0,0 +1,92 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.BusinessStatService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 订单状态的批量流转
+ * 每批订单在一个事务中先对仍处于原状态的订单加行锁，得到流转前的状态用于累加营业数据，
+ * 再以一条带状态条件的update修改；按id分批扫描时每批只查询id，内存和单个事务的耗时都与订单总数无关
+ */
+@Component
+@Slf4j
+public class OrderBatchTransition {
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private BusinessStatService businessStatService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 把一批订单中仍处于fromStatus的订单流转为target中的状态
+     * @param ids
+     * @param fromStatus
+     * @param target 流转后的状态、取消原因、取消时间等
+     * @return 实际流转的订单数
+     */
+    public int transition(List<Long> ids, Integer fromStatus, Orders target) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Integer count = transactionTemplate.execute(status -> {
+            List<Orders> list = orderMapper.getByIdsAndStatusForUpdate(ids, fromStatus);
+            if (list.isEmpty()) {
+                return 0;
+            }
+
+            List<Long> lockedIds = list.stream().map(Orders::getId).collect(Collectors.toList());
+            orderMapper.updateStatusBatch(lockedIds, fromStatus, target);
+            businessStatService.ordersStatusChanged(list, target.getStatus());
+            return list.size();
+        });
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 把下单时间早于orderTime、处于fromStatus的所有订单按id分批流转，每批一个事务
+     * @param fromStatus
+     * @param orderTime
+     * @param target
+     * @param batchSize
+     * @return 实际流转的订单数
+     */
+    public int transitionAll(Integer fromStatus, LocalDateTime orderTime, Orders target, int batchSize) {
+        int total = 0;
+        long lastId = 0;
+        List<Long> ids;
+        do {
+            // select id from orders where status = ? and order_time < ? and id > ? order by id limit ?
+            ids = orderMapper.getIdsByStatusAndOrderTimeLT(fromStatus, orderTime, lastId, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            total += transition(ids, fromStatus, target);
+            lastId = ids.get(ids.size() - 1);
+        } while (ids.size() == batchSize);
+
+        if (total > 0) {
+            log.info("订单状态批量流转：{} -> {}，共{}条", fromStatus, target.getStatus(), total);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,97 @@
+package com.sky.order;
+
+import com.sky.dto.OrderStatusCountDTO;
+import com.sky.mapper.OrderMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各状态的订单数
+ * 一条group by查询得到所有状态的订单数，结果在redis中缓存几秒，各节点的管理端轮询共用同一份结果；
+ * 订单下单或状态流转的事务提交后删除缓存
+ */
+@Component
+public class OrderStatusCounter {
+
+    // 全部订单各状态数量的缓存key
+    private static final String ALL_KEY = "order_status_count_all";
+    // 当天订单各状态数量的缓存key前缀，order_status_count_{日期}
+    private static final String DAY_KEY_PREFIX = "order_status_count_";
+    // 缓存时间（秒）
+    private static final long EXPIRE_SECONDS = 5;
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 全部订单中各状态的订单数
+     * @return 订单状态 -> 订单数，没有订单的状态不包含在内
+     */
+    public Map<Integer, Integer> countAll() {
+        return count(ALL_KEY, null);
+    }
+
+    /**
+     * 当天下单的订单中各状态的订单数
+     * @return 订单状态 -> 订单数，没有订单的状态不包含在内
+     */
+    public Map<Integer, Integer> countToday() {
+        LocalDate today = LocalDate.now();
+        return count(DAY_KEY_PREFIX + today, today);
+    }
+
+    /**
+     * 订单数发生变化，删除缓存，在事务中调用时事务提交后才删除
+     */
+    public void invalidate() {
+        Runnable task = () -> stringRedisTemplate.delete(Arrays.asList(ALL_KEY, DAY_KEY_PREFIX + LocalDate.now()));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 查询缓存，未命中时按状态分组统计并写入缓存
+     * @param key
+     * @param date 统计这一天下单的订单，为null时统计全部订单
+     * @return
+     */
+    private Map<Integer, Integer> count(String key, LocalDate date) {
+        Map<Object, Object> cached = stringRedisTemplate.opsForHash().entries(key);
+        Map<Integer, Integer> result = new HashMap<>();
+        if (!cached.isEmpty()) {
+            cached.forEach((status, count) -> result.put(Integer.valueOf((String) status), Integer.valueOf((String) count)));
+            result.remove(0);
+            return result;
+        }
+
+        Map<String, String> hash = new HashMap<>();
+        // 没有订单时也写入缓存，避免每次都查询数据库
+        hash.put("0", "0");
+        for (OrderStatusCountDTO dto : orderMapper.countGroupByStatus(date == null ? null : date.atStartOfDay())) {
+            result.put(dto.getStatus(), dto.getCount());
+            hash.put(String.valueOf(dto.getStatus()), String.valueOf(dto.getCount()));
+        }
+        stringRedisTemplate.opsForHash().putAll(key, hash);
+        stringRedisTemplate.expire(key, EXPIRE_SECONDS, TimeUnit.SECONDS);
+        return result;
+    }
+}
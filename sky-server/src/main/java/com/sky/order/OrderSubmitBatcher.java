@@ -0,0 +1,242 @@
+package com.sky.order;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.cart.CartStore;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderSubmitProperties;
+import com.sky.service.BusinessStatService;
+import com.sky.vo.OrderSubmitStatusVO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步下单的批量写入
+ * 下单请求校验通过后放入队列立即返回，后台线程把一段时间内的订单合并为一个事务，
+ * 多行插入订单和订单明细；批量写入失败时逐个重试，仍失败的订单标记为下单失败并恢复购物车
+ */
+@Component
+@Slf4j
+public class OrderSubmitBatcher {
+
+    // 下单结果的key前缀，order_submit_{userId}_{orderNumber}
+    public static final String STATUS_KEY_PREFIX = "order_submit_";
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private BusinessStatService businessStatService;
+    @Autowired
+    private CartStore cartStore;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderSubmitProperties orderSubmitProperties;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    private TransactionTemplate transactionTemplate;
+    private BlockingQueue<PendingOrder> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        queue = new ArrayBlockingQueue<>(orderSubmitProperties.getQueueCapacity());
+        running = true;
+        worker = new Thread(this::run, "order-submit");
+        worker.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * 放入下单队列
+     * @param pendingOrder
+     * @return 队列已满时返回false
+     */
+    public boolean offer(PendingOrder pendingOrder) {
+        return running && queue.offer(pendingOrder);
+    }
+
+    /**
+     * 保存下单结果
+     * @param userId
+     * @param statusVO
+     */
+    public void saveStatus(Long userId, OrderSubmitStatusVO statusVO) {
+        stringRedisTemplate.opsForValue().set(STATUS_KEY_PREFIX + userId + "_" + statusVO.getOrderNumber(),
+                JSON.toJSONString(statusVO), orderSubmitProperties.getStatusExpireMinutes(), TimeUnit.MINUTES);
+    }
+
+    /**
+     * 查询下单结果
+     * @param userId
+     * @param orderNumber
+     * @return 不存在或已过期时返回null
+     */
+    public OrderSubmitStatusVO getStatus(Long userId, String orderNumber) {
+        String json = stringRedisTemplate.opsForValue().get(STATUS_KEY_PREFIX + userId + "_" + orderNumber);
+        return json == null ? null : JSON.parseObject(json, OrderSubmitStatusVO.class);
+    }
+
+    /**
+     * 后台线程：取出第一个订单后在等待时间内继续凑批，再批量写入
+     */
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            List<PendingOrder> batch = new ArrayList<>();
+            try {
+                PendingOrder first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(orderSubmitProperties.getLingerMillis());
+                while (batch.size() < orderSubmitProperties.getBatchSize()) {
+                    PendingOrder next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 应用关闭，写完已取出和队列中剩余的订单后退出
+                queue.drainTo(batch);
+            }
+
+            if (!batch.isEmpty()) {
+                process(batch);
+            }
+        }
+    }
+
+    /**
+     * 批量写入一批订单，失败时逐个重试
+     * @param batch
+     */
+    private void process(List<PendingOrder> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            batch.forEach(this::succeed);
+            log.info("批量写入订单：{}条", batch.size());
+            return;
+        } catch (Exception e) {
+            log.warn("批量写入{}条订单失败，逐个重试：{}", batch.size(), e.getMessage());
+        }
+
+        for (PendingOrder pendingOrder : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(Collections.singletonList(pendingOrder)));
+                succeed(pendingOrder);
+            } catch (Exception e) {
+                fail(pendingOrder, e);
+            }
+        }
+    }
+
+    /**
+     * 多行插入订单，回填订单id后多行插入所有订单明细
+     * @param batch
+     */
+    private void insert(List<PendingOrder> batch) {
+        List<Orders> ordersList = new ArrayList<>(batch.size());
+        for (PendingOrder pendingOrder : batch) {
+            // 批量写入失败后重试时，清除上一次回填的id
+            pendingOrder.getOrders().setId(null);
+            ordersList.add(pendingOrder.getOrders());
+        }
+        orderMapper.insertBatch(ordersList);
+
+        List<OrderDetail> orderDetailList = new ArrayList<>();
+        for (PendingOrder pendingOrder : batch) {
+            Long orderId = pendingOrder.getOrders().getId();
+            pendingOrder.getOrderDetails().forEach(orderDetail -> orderDetail.setOrderId(orderId));
+            orderDetailList.addAll(pendingOrder.getOrderDetails());
+        }
+        orderDetailMapper.insertBatch(orderDetailList);
+
+        // 在同一事务中累加营业数据
+        ordersList.forEach(businessStatService::orderSubmitted);
+    }
+
+    /**
+     * 标记下单成功
+     * @param pendingOrder
+     */
+    private void succeed(PendingOrder pendingOrder) {
+        Orders orders = pendingOrder.getOrders();
+        orderTimeoutQueue.schedule(orders);
+        saveStatus(orders.getUserId(), OrderSubmitStatusVO.builder()
+                .orderNumber(orders.getNumber())
+                .status(OrderSubmitStatusVO.SUCCESS)
+                .id(orders.getId())
+                .orderAmount(orders.getAmount())
+                .orderTime(orders.getOrderTime())
+                .build());
+    }
+
+    /**
+     * 标记下单失败，并把下单时清空的购物车恢复
+     * @param pendingOrder
+     * @param e
+     */
+    private void fail(PendingOrder pendingOrder, Exception e) {
+        Orders orders = pendingOrder.getOrders();
+        log.error("订单{}写入失败：{}", orders.getNumber(), e.getMessage());
+        try {
+            cartStore.addBatch(pendingOrder.getShoppingCarts());
+            saveStatus(orders.getUserId(), OrderSubmitStatusVO.builder()
+                    .orderNumber(orders.getNumber())
+                    .status(OrderSubmitStatusVO.FAILED)
+                    .orderAmount(orders.getAmount())
+                    .orderTime(orders.getOrderTime())
+                    .message(MessageConstant.ORDER_SUBMIT_FAILED)
+                    .build());
+        } catch (Exception ex) {
+            log.error("订单{}下单失败后恢复购物车失败：{}", orders.getNumber(), ex.getMessage());
+        }
+    }
+
+    /**
+     * 等待写入的订单
+     */
+    @Data
+    @AllArgsConstructor
+    public static class PendingOrder {
+        private Orders orders;
+        private List<OrderDetail> orderDetails;
+        // 下单时清空的购物车，下单失败时恢复
+        private List<ShoppingCart> shoppingCarts;
+    }
+}
@@ -0,0 +1,162 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.properties.OrderTimeoutProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 未支付订单的超时取消队列
+ * 下单时把订单id放入redis有序集合 order_timeout，分值为超时时间；各节点定时取出已到期的订单id，
+ * 取出与删除由lua脚本原子完成，每个订单只会被一个节点取到，再批量取消仍未支付的订单
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue {
+
+    // 超时队列的key
+    public static final String TIMEOUT_KEY = "order_timeout";
+
+    // 取出最多ARGV[2]个已到期的订单id，并从队列中删除
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "if #ids > 0 then redis.call('ZREM', KEYS[1], unpack(ids)) end " +
+            "return ids", List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderBatchTransition orderBatchTransition;
+    @Autowired
+    private OrderTimeoutProperties orderTimeoutProperties;
+
+    /**
+     * 订单写入后放入超时队列，在事务中调用时事务提交后才放入
+     * @param orders
+     */
+    public void schedule(Orders orders) {
+        Long id = orders.getId();
+        long deadline = orders.getOrderTime().plusMinutes(orderTimeoutProperties.getTimeoutMinutes())
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Runnable task = () -> stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, String.valueOf(id), deadline);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 订单已支付或已取消，从超时队列中移除，在事务中调用时事务提交后才移除，回滚时订单仍留在队列中
+     * 即使移除后订单状态没有变化，也会由每分钟的定时任务兜底取消
+     * @param id
+     */
+    public void remove(Long id) {
+        Runnable task = () -> stringRedisTemplate.opsForZSet().remove(TIMEOUT_KEY, String.valueOf(id));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 轮询超时队列，批量取消已到期的订单
+     */
+    @Scheduled(fixedDelayString = "${sky.order-timeout.poll-millis:200}")
+    public void poll() {
+        int batchSize = orderTimeoutProperties.getBatchSize();
+        while (true) {
+            List<Long> ids = claim(batchSize);
+            if (ids.isEmpty()) {
+                return;
+            }
+
+            try {
+                int count = cancel(ids);
+                log.info("取消超时订单：到期{}条，取消{}条", ids.size(), count);
+            } catch (Exception e) {
+                // 放回队列，下次轮询时重试
+                log.error("取消超时订单失败，{}条订单放回队列：{}", ids.size(), e.getMessage());
+                long now = System.currentTimeMillis();
+                ids.forEach(id -> stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, String.valueOf(id), now));
+                return;
+            }
+
+            if (ids.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 批量取消仍处于待付款状态的订单
+     * @param ids
+     * @return 实际取消的订单数
+     */
+    public int cancel(List<Long> ids) {
+        return orderBatchTransition.transition(ids, Orders.PENDING_PAYMENT, cancelled());
+    }
+
+    /**
+     * 取消下单时间早于orderTime的所有待付款订单，按id分批取消
+     * @param orderTime
+     * @return 实际取消的订单数
+     */
+    public int cancelAll(LocalDateTime orderTime) {
+        return orderBatchTransition.transitionAll(Orders.PENDING_PAYMENT, orderTime, cancelled(),
+                orderTimeoutProperties.getBatchSize());
+    }
+
+    /**
+     * 超时取消后的订单状态
+     * @return
+     */
+    private Orders cancelled() {
+        return Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason(MessageConstant.ORDER_TIME_OUT)
+                .cancelTime(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 取出已到期的订单id
+     * @param limit
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> claim(int limit) {
+        List<String> ids = stringRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(TIMEOUT_KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(limit));
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        return ids.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+}
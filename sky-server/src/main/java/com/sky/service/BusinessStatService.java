@@ -0,0 +1,67 @@
+package com.sky.service;
+
+import com.sky.entity.BusinessDailyStat;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.vo.BusinessDataVO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BusinessStatService {
+
+    /**
+     * 用户下单，累加当天的订单数
+     * @param orders
+     */
+    void orderSubmitted(Orders orders);
+
+    /**
+     * 订单状态流转，orders中保存的是流转前的状态
+     * @param orders
+     * @param status 流转后的状态
+     */
+    void orderStatusChanged(Orders orders, Integer status);
+
+    /**
+     * 批量订单状态流转，ordersList中保存的是流转前的状态
+     * @param ordersList
+     * @param status 流转后的状态
+     */
+    void ordersStatusChanged(List<Orders> ordersList, Integer status);
+
+    /**
+     * 新用户注册，累加当天的新增用户数
+     * @param user
+     */
+    void userCreated(User user);
+
+    /**
+     * 日结：按原始订单重新汇总某天的数据
+     * @param date
+     */
+    void closeDay(LocalDate date);
+
+    /**
+     * 查询日期区间内每天的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<BusinessDailyStat> list(LocalDate begin, LocalDate end);
+
+    /**
+     * 根据日期区间汇总营业数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    BusinessDataVO getBusinessData(LocalDate begin, LocalDate end);
+
+    /**
+     * 把若干天的汇总数据合计为营业数据
+     * @param statList
+     * @return
+     */
+    BusinessDataVO summarize(List<BusinessDailyStat> statList);
+}
@@ -0,0 +1,21 @@
+package com.sky.service;
+
+import com.sky.vo.CatalogChangesVO;
+import com.sky.vo.MenuVO;
+
+public interface CatalogService {
+
+    /**
+     * 查询目录版本号since之后的变更
+     * @param since 客户端已同步到的目录版本号
+     * @return
+     */
+    CatalogChangesVO changes(Long since);
+
+    /**
+     * 查询完整菜单：启用的分类及其起售的菜品（含口味）和套餐
+     * @param version 菜单标记的目录版本号，须在查询之前读取
+     * @return
+     */
+    MenuVO menu(long version);
+}
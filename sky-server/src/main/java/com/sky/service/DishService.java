@@ -7,6 +7,7 @@ import com.sky.result.PageResult;
 import com.sky.vo.DishVO;
 
 import java.util.List;
+import java.util.Map;
 
 public interface DishService {
 
@@ -56,6 +57,13 @@ public interface DishService {
      */
     List<DishVO> listWithFlavor(Dish dish);
 
+    /**
+     * 批量查询多个分类下起售的菜品和口味
+     * @param categoryIds
+     * @return 分类id -> 菜品，没有菜品的分类不在结果中
+     */
+    Map<Long, List<DishVO>> listWithFlavorByCategoryIds(List<Long> categoryIds);
+
     /**
      * 启用禁用菜品
      * @param status
@@ -4,6 +4,7 @@ import com.sky.dto.*;
 import com.sky.result.PageResult;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
+import com.sky.vo.OrderSubmitStatusVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
 
@@ -16,6 +17,21 @@ public interface OrderService {
      */
     OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO);
 
+    /**
+     * 用户异步下单，按幂等键去重
+     * @param ordersSubmitDTO
+     * @param idempotencyKey
+     * @return
+     */
+    OrderSubmitVO submitOrderAsync(OrdersSubmitDTO ordersSubmitDTO, String idempotencyKey);
+
+    /**
+     * 查询异步下单的结果
+     * @param orderNumber
+     * @return
+     */
+    OrderSubmitStatusVO getSubmitStatus(String orderNumber);
+
     /**
      * 订单支付
      * @param ordersPaymentDTO
@@ -30,14 +46,12 @@ public interface OrderService {
     void paySuccess(String outTradeNo);
 
     /**
-     * 分页查询历史订单
+     * 分页查询当前用户的历史订单
      *
-     * @param page
-     * @param pageSize
-     * @param status
+     * @param ordersPageQueryDTO 页码、每页记录数、订单状态，以及可选的游标
      * @return
      */
-    PageResult page(int page, int pageSize, Integer status);
+    PageResult page(OrdersPageQueryDTO ordersPageQueryDTO);
 
     /**
      * 查询订单详情
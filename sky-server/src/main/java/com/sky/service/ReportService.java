@@ -43,8 +43,10 @@ public interface ReportService {
     SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
 
     /**
-     * 导出运营数据报表
+     * 导出运营数据报表，开始日期不能晚于结束日期，最多导出366天
+     * @param begin
+     * @param end
      * @param response
      */
-    void exportBusinessData(HttpServletResponse response);
+    void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response);
 }
@@ -8,6 +8,7 @@ import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
 
 import java.util.List;
+import java.util.Map;
 
 public interface SetmealService {
 
@@ -58,6 +59,13 @@ public interface SetmealService {
      */
     List<Setmeal> list(Setmeal setmeal);
 
+    /**
+     * 批量查询多个分类下起售的套餐，一次读取所有分类的套餐缓存，未命中的分类批量查询数据库并回填
+     * @param categoryIds
+     * @return 分类id -> 套餐
+     */
+    Map<Long, List<Setmeal>> listByCategoryIds(List<Long> categoryIds);
+
     /**
      * 根据id查询菜品选项
      * @param id
@@ -0,0 +1,350 @@
+package com.sky.service.impl;
+
+import com.sky.dto.UserDailyStatDTO;
+import com.sky.entity.BusinessDailyStat;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.mapper.BusinessDailyStatMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.order.OrderStatusCounter;
+import com.sky.service.BusinessStatService;
+import com.sky.vo.BusinessDataVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 每日营业数据汇总
+ * 订单状态流转时把增量登记到订单事务上，在事务提交前的最后一步累加到当天的汇总行，
+ * 汇总行的行锁只持有到紧接着的提交，读取时只需按天读取汇总行；
+ * 只由增量累加出的行（如上线当天）缺少首次累加之前的数据，读取时先按原始数据重新汇总；
+ * 重新汇总先锁定汇总行再读取原始数据，与正在提交的累加串行执行，不会覆盖未提交的增量；
+ * 所有订单的下单和状态流转都会经过这里，同时删除各状态订单数的缓存
+ */
+@Service
+@Slf4j
+public class BusinessStatServiceImpl implements BusinessStatService {
+
+    @Autowired
+    private BusinessDailyStatMapper businessDailyStatMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private OrderStatusCounter orderStatusCounter;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate requiresNewTemplate;
+
+    @PostConstruct
+    public void init() {
+        requiresNewTemplate = new TransactionTemplate(transactionManager);
+        requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 用户下单，累加当天的订单数
+     * @param orders
+     */
+    public void orderSubmitted(Orders orders) {
+        BusinessDailyStat delta = emptyStat(orders.getOrderTime().toLocalDate());
+        delta.setTotalOrderCount(1);
+        addStatusCount(delta, orders.getStatus(), 1);
+        increment(Collections.singletonList(delta));
+        orderStatusCounter.invalidate();
+    }
+
+    /**
+     * 订单状态流转
+     * @param orders
+     * @param status
+     */
+    public void orderStatusChanged(Orders orders, Integer status) {
+        ordersStatusChanged(Collections.singletonList(orders), status);
+    }
+
+    /**
+     * 批量订单状态流转，同一天的订单合并为一次累加
+     * @param ordersList
+     * @param status
+     */
+    public void ordersStatusChanged(List<Orders> ordersList, Integer status) {
+        Map<LocalDate, BusinessDailyStat> deltaMap = new HashMap<>();
+        for (Orders orders : ordersList) {
+            if (orders.getOrderTime() == null || status.equals(orders.getStatus())) {
+                continue;
+            }
+
+            BusinessDailyStat delta = deltaMap.computeIfAbsent(orders.getOrderTime().toLocalDate(), this::emptyStat);
+            addStatusCount(delta, orders.getStatus(), -1);
+            addStatusCount(delta, status, 1);
+
+            // 营业额只统计已完成的订单
+            BigDecimal amount = orders.getAmount() == null ? BigDecimal.ZERO : orders.getAmount();
+            if (Orders.COMPLETED.equals(status)) {
+                delta.setTurnover(delta.getTurnover().add(amount));
+            } else if (Orders.COMPLETED.equals(orders.getStatus())) {
+                delta.setTurnover(delta.getTurnover().subtract(amount));
+            }
+        }
+
+        if (!deltaMap.isEmpty()) {
+            increment(new ArrayList<>(deltaMap.values()));
+            orderStatusCounter.invalidate();
+        }
+    }
+
+    /**
+     * 新用户注册，累加当天的新增用户数
+     * @param user
+     */
+    public void userCreated(User user) {
+        BusinessDailyStat delta = emptyStat(user.getCreateTime().toLocalDate());
+        delta.setNewUsers(1);
+        increment(Collections.singletonList(delta));
+    }
+
+    /**
+     * 日结：按原始订单重新汇总某天的数据，并标记为已日结
+     * @param date
+     */
+    public void closeDay(LocalDate date) {
+        rebuild(date, date);
+    }
+
+    /**
+     * 查询日期区间内每天的汇总数据
+     * 缺少汇总行、汇总行只由增量累加得到、以及未日结的历史日期，统一从原始数据重新汇总一次
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<BusinessDailyStat> list(LocalDate begin, LocalDate end) {
+        Map<LocalDate, BusinessDailyStat> statMap = businessDailyStatMapper.listByDate(begin, end).stream()
+                .collect(Collectors.toMap(BusinessDailyStat::getStatDate, stat -> stat));
+
+        // 找出需要重新汇总的日期范围，不包含今天之后的日期
+        LocalDate today = LocalDate.now();
+        LocalDate rebuildBegin = null;
+        LocalDate rebuildEnd = null;
+        for (LocalDate date = begin; !date.isAfter(end) && !date.isAfter(today); date = date.plusDays(1)) {
+            BusinessDailyStat stat = statMap.get(date);
+            boolean stale = stat == null || stat.getRebuilt() != 1 || (date.isBefore(today) && stat.getClosed() != 1);
+            if (stale) {
+                if (rebuildBegin == null) {
+                    rebuildBegin = date;
+                }
+                rebuildEnd = date;
+            }
+        }
+        if (rebuildBegin != null) {
+            rebuild(rebuildBegin, rebuildEnd).forEach(stat -> statMap.put(stat.getStatDate(), stat));
+        }
+
+        List<BusinessDailyStat> statList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            BusinessDailyStat stat = statMap.get(date);
+            statList.add(stat == null ? emptyStat(date) : stat);
+        }
+        return statList;
+    }
+
+    /**
+     * 根据日期区间汇总营业数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    public BusinessDataVO getBusinessData(LocalDate begin, LocalDate end) {
+        return summarize(list(begin, end));
+    }
+
+    /**
+     * 把若干天的汇总数据合计为营业数据
+     * @param statList
+     * @return
+     */
+    public BusinessDataVO summarize(List<BusinessDailyStat> statList) {
+        BigDecimal turnover = BigDecimal.ZERO;
+        int totalOrderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        for (BusinessDailyStat stat : statList) {
+            turnover = turnover.add(stat.getTurnover());
+            totalOrderCount += stat.getTotalOrderCount();
+            validOrderCount += stat.getCompletedCount();
+            newUsers += stat.getNewUsers();
+        }
+
+        Double unitPrice = 0.0;
+
+        Double orderCompletionRate = 0.0;
+        if(totalOrderCount != 0 && validOrderCount != 0){
+            //订单完成率
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
+            //平均客单价
+            unitPrice = turnover.doubleValue() / validOrderCount;
+        }
+
+        return BusinessDataVO.builder()
+                .turnover(turnover.doubleValue())
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(newUsers)
+                .build();
+    }
+
+    /**
+     * 按原始订单和用户数据重新汇总日期区间内的数据并写入汇总表，今天之前的日期标记为已日结
+     * 在独立事务中先按日期顺序锁定汇总行：已在提交前累加、持有同一行锁的订单事务提交后才读取原始数据，
+     * 读取之后才提交的订单事务要等重新汇总提交后才能累加，增量既不会丢失也不会重复计入
+     * @param begin
+     * @param end
+     * @return
+     */
+    private List<BusinessDailyStat> rebuild(LocalDate begin, LocalDate end) {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
+
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+
+        List<BusinessDailyStat> statList = requiresNewTemplate.execute(status -> {
+            businessDailyStatMapper.lockByDate(dates);
+
+            Map<LocalDate, BusinessDailyStat> statMap = orderMapper.getDailyBusinessStat(beginTime, endTime).stream()
+                    .collect(Collectors.toMap(BusinessDailyStat::getStatDate, stat -> stat));
+            Map<LocalDate, Integer> newUserMap = userMapper.getDailyNewUsers(beginTime, endTime).stream()
+                    .collect(Collectors.toMap(UserDailyStatDTO::getDate, UserDailyStatDTO::getNewUsers));
+
+            LocalDate today = LocalDate.now();
+            LocalDateTime now = LocalDateTime.now();
+            List<BusinessDailyStat> list = new ArrayList<>();
+            for (LocalDate date : dates) {
+                BusinessDailyStat stat = statMap.get(date);
+                if (stat == null) {
+                    stat = emptyStat(date);
+                }
+                stat.setNewUsers(newUserMap.getOrDefault(date, 0));
+                stat.setClosed(date.isBefore(today) ? 1 : 0);
+                stat.setRebuilt(1);
+                stat.setUpdateTime(now);
+                list.add(stat);
+            }
+
+            businessDailyStatMapper.upsertBatch(list);
+            return list;
+        });
+        log.info("重新汇总营业数据：{}至{}", begin, end);
+        return statList;
+    }
+
+    /**
+     * 在调用方的订单事务提交前累加增量，与订单的修改一起提交或回滚；
+     * 同一事务中的增量合并到事务提交前一次累加，汇总行的行锁只在提交前获取，不会在事务的其余语句执行期间持有；
+     * 多天的增量按日期顺序累加，与重新汇总的加锁顺序一致，避免死锁；不在事务中调用时直接累加
+     * @param deltaList
+     */
+    private void increment(List<BusinessDailyStat> deltaList) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(deltaList);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<BusinessDailyStat> pending = (List<BusinessDailyStat>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<BusinessDailyStat> deltas = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, deltas);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void beforeCommit(boolean readOnly) {
+                    apply(deltas);
+                }
+
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BusinessStatServiceImpl.this);
+                }
+            });
+            pending = deltas;
+        }
+        pending.addAll(deltaList);
+    }
+
+    /**
+     * 按日期顺序累加增量
+     * @param deltaList
+     */
+    private void apply(List<BusinessDailyStat> deltaList) {
+        deltaList.sort(Comparator.comparing(BusinessDailyStat::getStatDate));
+        deltaList.forEach(businessDailyStatMapper::increment);
+    }
+
+    /**
+     * 按订单状态累加对应的订单数
+     * @param stat
+     * @param status
+     * @param count
+     */
+    private void addStatusCount(BusinessDailyStat stat, Integer status, int count) {
+        if (Orders.PENDING_PAYMENT.equals(status)) {
+            stat.setPendingPaymentCount(stat.getPendingPaymentCount() + count);
+        } else if (Orders.TO_BE_CONFIRMED.equals(status)) {
+            stat.setToBeConfirmedCount(stat.getToBeConfirmedCount() + count);
+        } else if (Orders.CONFIRMED.equals(status)) {
+            stat.setConfirmedCount(stat.getConfirmedCount() + count);
+        } else if (Orders.DELIVERY_IN_PROGRESS.equals(status)) {
+            stat.setDeliveryInProgressCount(stat.getDeliveryInProgressCount() + count);
+        } else if (Orders.COMPLETED.equals(status)) {
+            stat.setCompletedCount(stat.getCompletedCount() + count);
+        } else if (Orders.CANCELLED.equals(status)) {
+            stat.setCancelledCount(stat.getCancelledCount() + count);
+        }
+    }
+
+    /**
+     * 构造某天各项为0的汇总数据
+     * @param date
+     * @return
+     */
+    private BusinessDailyStat emptyStat(LocalDate date) {
+        return BusinessDailyStat.builder()
+                .statDate(date)
+                .turnover(BigDecimal.ZERO)
+                .totalOrderCount(0)
+                .newUsers(0)
+                .pendingPaymentCount(0)
+                .toBeConfirmedCount(0)
+                .confirmedCount(0)
+                .deliveryInProgressCount(0)
+                .completedCount(0)
+                .cancelledCount(0)
+                .closed(0)
+                .rebuilt(0)
+                .updateTime(LocalDateTime.now())
+                .build();
+    }
+}
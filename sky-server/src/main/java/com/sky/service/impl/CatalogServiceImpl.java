@@ -0,0 +1,209 @@
+package com.sky.service.impl;
+
+import com.sky.cache.CatalogVersion;
+import com.sky.cache.DishCache;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.CategoryMapper;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.CatalogProperties;
+import com.sky.service.CatalogService;
+import com.sky.service.DishService;
+import com.sky.service.SetmealService;
+import com.sky.vo.CatalogChangeVO;
+import com.sky.vo.CatalogChangesVO;
+import com.sky.vo.DishVO;
+import com.sky.vo.MenuCategoryVO;
+import com.sky.vo.MenuVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 用户端商品目录：完整菜单和增量同步
+ * 变更日志只记录哪些条目在哪个版本被修改，返回的数据按当前数据库状态批量查询，
+ * 已删除、停售、禁用的条目返回删除标记
+ */
+@Service
+@Slf4j
+public class CatalogServiceImpl implements CatalogService {
+
+    // 分类类型：1菜品分类 2套餐分类
+    private static final Integer DISH_CATEGORY = 1;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+    @Autowired
+    private CatalogProperties catalogProperties;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private DishFlavorMapper dishFlavorMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private CategoryMapper categoryMapper;
+    @Autowired
+    private DishCache dishCache;
+    @Autowired
+    private DishService dishService;
+    @Autowired
+    private SetmealService setmealService;
+
+    /**
+     * 查询完整菜单：启用的分类及其起售的菜品（含口味）和套餐
+     * 菜品和套餐分别一次批量读取所有分类的缓存，未命中的分类一次批量查询数据库
+     * @param version 由调用方在查询之前读取，查询期间发生的变更会在下次增量同步时返回；
+     *                菜品缓存只使用在该版本号之后校验过的近端缓存，菜单内容不会比版本号旧
+     * @return
+     */
+    public MenuVO menu(long version) {
+        List<Category> categories = categoryMapper.list(null);
+        List<Long> dishCategoryIds = new ArrayList<>();
+        List<Long> setmealCategoryIds = new ArrayList<>();
+        categories.forEach(category -> {
+            if (DISH_CATEGORY.equals(category.getType())) {
+                dishCategoryIds.add(category.getId());
+            } else {
+                setmealCategoryIds.add(category.getId());
+            }
+        });
+
+        Map<Long, List<DishVO>> dishMap = dishCategoryIds.isEmpty() ? Collections.emptyMap()
+                : dishCache.getAll(dishCategoryIds, version, dishService::listWithFlavorByCategoryIds);
+        Map<Long, List<Setmeal>> setmealMap = setmealService.listByCategoryIds(setmealCategoryIds);
+
+        List<MenuCategoryVO> menuCategories = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            menuCategories.add(MenuCategoryVO.builder()
+                    .id(category.getId())
+                    .type(category.getType())
+                    .name(category.getName())
+                    .sort(category.getSort())
+                    .dishes(dishMap.getOrDefault(category.getId(), new ArrayList<>()))
+                    .setmeals(setmealMap.getOrDefault(category.getId(), new ArrayList<>()))
+                    .build());
+        }
+
+        return MenuVO.builder()
+                .version(version)
+                .categories(menuCategories)
+                .build();
+    }
+
+    /**
+     * 查询目录版本号since之后的变更
+     * @param since 客户端已同步到的目录版本号
+     * @return
+     */
+    public CatalogChangesVO changes(Long since) {
+        long from = since == null ? 0 : since;
+        int maxChanges = catalogProperties.getMaxChanges();
+
+        // 先查询变更再读取已移除的最大序号，查询期间发生的移除也能被发现
+        Map<String, Long> changeLog = catalogVersion.changesSince(from, maxChanges + 1);
+        long floor = catalogVersion.floor();
+        long latest = catalogVersion.latest();
+
+        // 所需的变更已被移除、变更过多或客户端版本号超前（如redis数据丢失）时，客户端全量重新加载
+        if (from < floor || from > latest || changeLog.size() > maxChanges) {
+            return CatalogChangesVO.builder()
+                    .version(latest)
+                    .reset(true)
+                    .changes(new ArrayList<>())
+                    .build();
+        }
+
+        // 按类型分组，批量查询当前数据
+        Map<String, List<Long>> idsByType = new HashMap<>();
+        changeLog.keySet().forEach(member -> {
+            int i = member.lastIndexOf('_');
+            idsByType.computeIfAbsent(member.substring(0, i), type -> new ArrayList<>())
+                    .add(Long.valueOf(member.substring(i + 1)));
+        });
+
+        List<Long> dishIds = new ArrayList<>(idsByType.getOrDefault(CatalogChangeVO.DISH, Collections.emptyList()));
+        List<Long> flavorDishIds = idsByType.getOrDefault(CatalogChangeVO.FLAVOR, Collections.emptyList());
+        flavorDishIds.stream().filter(id -> !dishIds.contains(id)).forEach(dishIds::add);
+
+        Map<Long, Dish> dishMap = getByIds(dishIds, dishMapper::getByIds, Dish::getId);
+        Map<Long, Setmeal> setmealMap = getByIds(idsByType.get(CatalogChangeVO.SETMEAL), setmealMapper::getByIds, Setmeal::getId);
+        Map<Long, Category> categoryMap = getByIds(idsByType.get(CatalogChangeVO.CATEGORY), categoryMapper::getByIds, Category::getId);
+        Map<Long, List<DishFlavor>> flavorMap = flavorDishIds.isEmpty() ? Collections.emptyMap()
+                : dishFlavorMapper.getByDishIds(flavorDishIds).stream().collect(Collectors.groupingBy(DishFlavor::getDishId));
+
+        long version = from;
+        List<CatalogChangeVO> changes = new ArrayList<>(changeLog.size());
+        for (Map.Entry<String, Long> entry : changeLog.entrySet()) {
+            String member = entry.getKey();
+            int i = member.lastIndexOf('_');
+            String type = member.substring(0, i);
+            Long id = Long.valueOf(member.substring(i + 1));
+
+            Object data = null;
+            if (CatalogChangeVO.DISH.equals(type)) {
+                data = enabled(dishMap.get(id), Dish::getStatus);
+            } else if (CatalogChangeVO.FLAVOR.equals(type)) {
+                data = enabled(dishMap.get(id), Dish::getStatus) == null ? null
+                        : flavorMap.getOrDefault(id, new ArrayList<>());
+            } else if (CatalogChangeVO.SETMEAL.equals(type)) {
+                data = enabled(setmealMap.get(id), Setmeal::getStatus);
+            } else if (CatalogChangeVO.CATEGORY.equals(type)) {
+                data = enabled(categoryMap.get(id), Category::getStatus);
+            }
+
+            changes.add(CatalogChangeVO.builder()
+                    .seq(entry.getValue())
+                    .type(type)
+                    .id(id)
+                    .deleted(data == null)
+                    .data(data)
+                    .build());
+            version = Math.max(version, entry.getValue());
+        }
+
+        // 只推进到已返回的最大序号：查询之后才写入的变更留给下次同步
+        return CatalogChangesVO.builder()
+                .version(version)
+                .reset(false)
+                .changes(changes)
+                .build();
+    }
+
+    /**
+     * 根据id集合批量查询，按id建立索引
+     * @param ids
+     * @param loader
+     * @param idGetter
+     * @return
+     */
+    private <T> Map<Long, T> getByIds(List<Long> ids, Function<List<Long>, List<T>> loader, Function<T, Long> idGetter) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return loader.apply(ids).stream().collect(Collectors.toMap(idGetter, Function.identity()));
+    }
+
+    /**
+     * 启用状态的条目原样返回，已删除或停用时返回null
+     * @param value
+     * @param statusGetter
+     * @return
+     */
+    private <T> T enabled(T value, Function<T, Integer> statusGetter) {
+        return value != null && StatusConstant.ENABLE.equals(statusGetter.apply(value)) ? value : null;
+    }
+}
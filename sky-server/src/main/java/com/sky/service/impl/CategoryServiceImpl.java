@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogSnapshot;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
@@ -34,6 +35,8 @@ public class CategoryServiceImpl implements CategoryService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
 
     /**
      * 新增分类
@@ -54,6 +57,8 @@ public class CategoryServiceImpl implements CategoryService {
 //        category.setUpdateUser(BaseContext.getCurrentId());
 
         categoryMapper.insert(category);
+
+        catalogSnapshot.refreshCategory(category.getId());
     }
 
     /**
@@ -89,6 +94,8 @@ public class CategoryServiceImpl implements CategoryService {
 
         //删除分类数据
         categoryMapper.deleteById(id);
+
+        catalogSnapshot.refreshCategory(id);
     }
 
     /**
@@ -104,6 +111,8 @@ public class CategoryServiceImpl implements CategoryService {
 //        category.setUpdateUser(BaseContext.getCurrentId());
 
         categoryMapper.update(category);
+
+        catalogSnapshot.refreshCategory(categoryDTO.getId());
     }
 
     /**
@@ -119,6 +128,8 @@ public class CategoryServiceImpl implements CategoryService {
 //                .updateUser(BaseContext.getCurrentId())
                 .build();
         categoryMapper.update(category);
+
+        catalogSnapshot.refreshCategory(id);
     }
 
     /**
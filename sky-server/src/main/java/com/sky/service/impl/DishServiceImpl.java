@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogSnapshot;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -23,7 +24,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -35,6 +40,8 @@ public class DishServiceImpl implements DishService {
     private DishFlavorMapper dishFlavorMapper;
     @Autowired
     private SetmealDishMapper setmealDishMapper;
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
 
     /**
      * 新增菜品和口味
@@ -61,6 +68,8 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.insertBatch(flavors);
         }
 
+        // 事务提交后清理菜品缓存并记录目录变更
+        catalogSnapshot.refreshDishes(Collections.singletonList(dishId), true);
     }
 
     /**
@@ -106,6 +115,8 @@ public class DishServiceImpl implements DishService {
 
         // 根据菜品id集合批量删除口味数据
         dishFlavorMapper.deleteByDishIds(ids);
+
+        catalogSnapshot.refreshDishes(ids, true);
     }
 
     /**
@@ -149,6 +160,8 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        catalogSnapshot.refreshDishes(Collections.singletonList(dishDTO.getId()), true);
     }
 
     /**
@@ -169,16 +182,45 @@ public class DishServiceImpl implements DishService {
      * @return
      */
     public List<DishVO> listWithFlavor(Dish dish) {
-        List<Dish> dishList = dishMapper.list(dish);
+        return withFlavors(dishMapper.list(dish));
+    }
 
+    /**
+     * 批量查询多个分类下起售的菜品和口味
+     * @param categoryIds
+     * @return 分类id -> 菜品，没有菜品的分类不在结果中
+     */
+    public Map<Long, List<DishVO>> listWithFlavorByCategoryIds(List<Long> categoryIds) {
+        if (categoryIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        // 一次查询出所有分类的菜品和口味，再按分类id分组
+        List<Dish> dishList = dishMapper.listByCategoryIds(categoryIds, StatusConstant.ENABLE);
+        return withFlavors(dishList).stream().collect(Collectors.groupingBy(DishVO::getCategoryId));
+    }
+
+    /**
+     * 为菜品查询口味，封装为VO
+     * @param dishList
+     * @return
+     */
+    private List<DishVO> withFlavors(List<Dish> dishList) {
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.isEmpty()) {
+            return dishVOList;
+        }
+
+        // 一次查询出所有菜品的口味，再按菜品id分组，避免逐个菜品查询
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
+            //从分组结果中取出菜品对应的口味
+            List<DishFlavor> flavors = flavorMap.getOrDefault(d.getId(), new ArrayList<>());
 
             dishVO.setFlavors(flavors);
             dishVOList.add(dishVO);
@@ -200,5 +242,7 @@ public class DishServiceImpl implements DishService {
 //                .updateUser(BaseContext.getCurrentId())
                 .build();
         dishMapper.update(dish);
+
+        catalogSnapshot.refreshDishes(Collections.singletonList(id), false);
     }
 }
@@ -5,6 +5,7 @@ import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.github.xiaoymin.knife4j.core.util.CollectionUtils;
+import com.sky.cart.CartStore;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
@@ -13,26 +14,37 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.order.OrderStatusCounter;
+import com.sky.order.OrderSubmitBatcher;
+import com.sky.order.OrderTimeoutQueue;
+import com.sky.properties.OrderSubmitProperties;
 import com.sky.result.PageResult;
+import com.sky.service.BusinessStatService;
 import com.sky.service.OrderService;
+import com.sky.utils.SnowflakeIdGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
+import com.sky.vo.OrderSubmitStatusVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
+import com.sky.websocket.WebSocketRelay;
 import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.weaver.ast.Or;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -46,13 +58,30 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private AddressBookMapper addressBookMapper;
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private CartStore cartStore;
     @Autowired
     private UserMapper userMapper;
     @Autowired
     private WeChatPayUtil weChatPayUtil;
     @Autowired
-    private WebSocketServer webSocketServer;
+    private WebSocketRelay webSocketRelay;
+    @Autowired
+    private BusinessStatService businessStatService;
+    @Autowired
+    private OrderSubmitBatcher orderSubmitBatcher;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderSubmitProperties orderSubmitProperties;
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Autowired
+    private OrderStatusCounter orderStatusCounter;
+
+    // 异步下单幂等键的key前缀，order_idem_{userId}_{幂等键}
+    private static final String IDEMPOTENCY_KEY_PREFIX = "order_idem_";
 
 
     /**
@@ -63,28 +92,151 @@ public class OrderServiceImpl implements OrderService {
     @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
         // 处理各种业务异常（地址簿为空、购物车数据为空）
-        AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
+        AddressBook addressBook = getAddressBook(ordersSubmitDTO.getAddressBookId());
+        Long userId = BaseContext.getCurrentId();
+        List<ShoppingCart> list = getShoppingCarts(userId);
+
+        // 向订单表插入一条数据
+        Orders orders = buildOrders(ordersSubmitDTO, addressBook, userId);
+        orders.setNumber(String.valueOf(snowflakeIdGenerator.nextId()));
+
+        orderMapper.insert(orders);
+        businessStatService.orderSubmitted(orders);
+        orderTimeoutQueue.schedule(orders);
+
+        // 向订单明细表插入n条数据
+        List<OrderDetail> orderDetailList = buildOrderDetails(list);
+        orderDetailList.forEach(orderDetail -> orderDetail.setOrderId(orders.getId()));
+
+        orderDetailMapper.insertBatch(orderDetailList);
+
+        // 清空当前用户购物车数据
+        cartStore.clean(userId);
+
+        // 封装VO返回结果
+        OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
+                .id(orders.getId())
+                .orderTime(orders.getOrderTime())
+                .orderNumber(orders.getNumber())
+                .orderAmount(orders.getAmount()).build();
+
+        return orderSubmitVO;
+    }
+
+    /**
+     * 用户异步下单
+     * 同一用户的同一幂等键只会下单一次；校验通过后放入下单队列，立即返回订单号，订单id通过查询下单结果获取
+     * @param ordersSubmitDTO
+     * @param idempotencyKey
+     * @return
+     */
+    public OrderSubmitVO submitOrderAsync(OrdersSubmitDTO ordersSubmitDTO, String idempotencyKey) {
+        Long userId = BaseContext.getCurrentId();
+        String orderNumber = String.valueOf(snowflakeIdGenerator.nextId());
+
+        // 占用幂等键，已被占用说明是重复提交，返回第一次提交的结果
+        String idempotencyRedisKey = IDEMPOTENCY_KEY_PREFIX + userId + "_" + idempotencyKey;
+        Boolean claimed = stringRedisTemplate.opsForValue().setIfAbsent(idempotencyRedisKey, orderNumber,
+                orderSubmitProperties.getIdempotencyExpireHours(), TimeUnit.HOURS);
+        if (!Boolean.TRUE.equals(claimed)) {
+            String existingNumber = stringRedisTemplate.opsForValue().get(idempotencyRedisKey);
+            OrderSubmitStatusVO statusVO = existingNumber == null ? null : orderSubmitBatcher.getStatus(userId, existingNumber);
+            return OrderSubmitVO.builder()
+                    .id(statusVO == null ? null : statusVO.getId())
+                    .orderNumber(existingNumber)
+                    .orderAmount(statusVO == null ? null : statusVO.getOrderAmount())
+                    .orderTime(statusVO == null ? null : statusVO.getOrderTime())
+                    .build();
+        }
+
+        try {
+            // 处理各种业务异常（地址簿为空、购物车数据为空）
+            AddressBook addressBook = getAddressBook(ordersSubmitDTO.getAddressBookId());
+            List<ShoppingCart> list = getShoppingCarts(userId);
+
+            Orders orders = buildOrders(ordersSubmitDTO, addressBook, userId);
+            orders.setNumber(orderNumber);
+
+            orderSubmitBatcher.saveStatus(userId, OrderSubmitStatusVO.builder()
+                    .orderNumber(orderNumber)
+                    .status(OrderSubmitStatusVO.PROCESSING)
+                    .orderAmount(orders.getAmount())
+                    .orderTime(orders.getOrderTime())
+                    .build());
+
+            // 放入队列前清空购物车，订单写入失败时由批量写入恢复
+            cartStore.clean(userId);
+            if (!orderSubmitBatcher.offer(new OrderSubmitBatcher.PendingOrder(orders, buildOrderDetails(list), list))) {
+                cartStore.addBatch(list);
+                throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_BUSY);
+            }
+
+            return OrderSubmitVO.builder()
+                    .orderNumber(orderNumber)
+                    .orderAmount(orders.getAmount())
+                    .orderTime(orders.getOrderTime())
+                    .build();
+        } catch (RuntimeException e) {
+            // 没有进入下单队列，释放幂等键，允许用户使用同一幂等键重新提交
+            stringRedisTemplate.delete(idempotencyRedisKey);
+            throw e;
+        }
+    }
+
+    /**
+     * 查询异步下单的结果
+     * @param orderNumber
+     * @return
+     */
+    public OrderSubmitStatusVO getSubmitStatus(String orderNumber) {
+        OrderSubmitStatusVO statusVO = orderSubmitBatcher.getStatus(BaseContext.getCurrentId(), orderNumber);
+        if (statusVO == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_NOT_FOUND);
+        }
+        return statusVO;
+    }
+
+    /**
+     * 查询下单使用的地址簿
+     * @param addressBookId
+     * @return
+     */
+    private AddressBook getAddressBook(Long addressBookId) {
+        AddressBook addressBook = addressBookMapper.getById(addressBookId);
         if (addressBook == null) {
             // 地址簿为空
             throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
         }
+        return addressBook;
+    }
 
-        Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
+    /**
+     * 查询用户的购物车
+     * @param userId
+     * @return
+     */
+    private List<ShoppingCart> getShoppingCarts(Long userId) {
+        List<ShoppingCart> list = cartStore.list(userId);
         if(list == null || list.size() == 0) {
             // 购物车数据为空
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL_FOR_ADD);
         }
+        return list;
+    }
 
-        // 向订单表插入一条数据
+    /**
+     * 构造待插入的订单，不含订单号
+     * @param ordersSubmitDTO
+     * @param addressBook
+     * @param userId
+     * @return
+     */
+    private Orders buildOrders(OrdersSubmitDTO ordersSubmitDTO, AddressBook addressBook, Long userId) {
         Orders orders = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO, orders);
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
@@ -94,30 +246,22 @@ public class OrderServiceImpl implements OrderService {
          * 便于在参看订单详情时，展示配送地址
          */
 
-        orderMapper.insert(orders);
+        return orders;
+    }
 
+    /**
+     * 把购物车数据转换为订单明细，不含订单id
+     * @param list
+     * @return
+     */
+    private List<OrderDetail> buildOrderDetails(List<ShoppingCart> list) {
         List<OrderDetail>  orderDetailList = new ArrayList<>();
-        // 向订单明细表插入n条数据
         for(ShoppingCart cart : list){
             OrderDetail orderDetail = new OrderDetail();
             BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(orders.getId());
             orderDetailList.add(orderDetail);
         }
-
-        orderDetailMapper.insertBatch(orderDetailList);
-
-        // 清空当前用户购物车数据
-        shoppingCartMapper.deleteByUserId(userId);
-
-        // 封装VO返回结果
-        OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
-                .id(orders.getId())
-                .orderTime(orders.getOrderTime())
-                .orderNumber(orders.getNumber())
-                .orderAmount(orders.getAmount()).build();
-
-        return orderSubmitVO;
+        return orderDetailList;
     }
 
     /**
@@ -126,6 +270,7 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersPaymentDTO
      * @return
      */
+    @Transactional
     public OrderPaymentVO payment(OrdersPaymentDTO ordersPaymentDTO) throws Exception {
         // 当前登录用户id
         Long userId = BaseContext.getCurrentId();
@@ -163,13 +308,26 @@ public class OrderServiceImpl implements OrderService {
         // 获取订单号码
         String orderNumber = ordersPaymentDTO.getOrderNumber();
 
-        log.info("调用updateStatus，用于替换微信支付更新数据库状态的问题");
-        orderMapper.updateStatus(orderStatus, orderPaidStatus, checkOutTime, orderNumber);
-
-        // 支付后，获取当前订单号对应的orderId
+        // 支付前，获取当前订单号对应的订单，用于获取orderId和支付前的状态
         Orders byNumber = orderMapper.getByNumber(orderNumber);
+        if (byNumber == null) {
+            // 异步下单的订单可能还在下单队列中，尚未写入数据库
+            OrderSubmitStatusVO statusVO = orderSubmitBatcher.getStatus(userId, orderNumber);
+            if (statusVO != null && OrderSubmitStatusVO.PROCESSING.equals(statusVO.getStatus())) {
+                throw new OrderBusinessException(MessageConstant.ORDER_SUBMITTING);
+            }
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
         Long orderId = byNumber.getId();
 
+        log.info("调用updateStatus，用于替换微信支付更新数据库状态的问题");
+        // 只修改仍处于待付款状态的订单，超时任务刚取消的订单不会被覆盖为已支付
+        if (orderMapper.updateStatus(orderStatus, orderPaidStatus, checkOutTime, orderNumber) == 0) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        businessStatService.orderStatusChanged(byNumber, orderStatus);
+        orderTimeoutQueue.remove(orderId);
+
         // 通过websocket向客户端浏览器推送消息 type orderId content
         Map map = new HashMap();
         map.put("type", 1); // 1表示来单提醒 2表示客户催单
@@ -177,7 +335,7 @@ public class OrderServiceImpl implements OrderService {
         map.put("content", "订单号：" + orderNumber);
 
         String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        webSocketRelay.publish(WebSocketServer.DEFAULT_SHOP_TOPIC, json);
 
         return vo;
     }
@@ -187,6 +345,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param outTradeNo
      */
+    @Transactional
     public void paySuccess(String outTradeNo) {
 
         // 根据订单号查询订单
@@ -201,35 +360,33 @@ public class OrderServiceImpl implements OrderService {
                 .build();
 
         orderMapper.update(orders);
+        businessStatService.orderStatusChanged(ordersDB, Orders.TO_BE_CONFIRMED);
+        orderTimeoutQueue.remove(ordersDB.getId());
     }
 
     /**
-     * 分页查询历史订单
+     * 分页查询当前用户的历史订单
      *
-     * @param pageNum
-     * @param pageSize
-     * @param status
+     * @param ordersPageQueryDTO
      * @return
      */
-    public PageResult page(int pageNum, int pageSize, Integer status) {
-        PageHelper.startPage(pageNum, pageSize);
-
-        OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
+    public PageResult page(OrdersPageQueryDTO ordersPageQueryDTO) {
         ordersPageQueryDTO.setUserId(BaseContext.getCurrentId());
-        if(status != null){
-            ordersPageQueryDTO.setStatus(status);
-        }
+        startPage(ordersPageQueryDTO);
 
         Page<Orders> page = orderMapper.page(ordersPageQueryDTO);
         List<OrderVO> orderVOList = new ArrayList<>(); // 构造返回列表
 
-        if(page != null && page.getTotal() > 0){
+        if(page != null && !page.isEmpty()){
+            // 一次查询出本页所有订单的明细数据，按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(page.getResult());
+
             for(Orders orders : page){
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
 
-                // 根据订单号查询某订单包含的明细数据
-                List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+                // 取出某订单包含的明细数据
+                List<OrderDetail> orderDetailList = orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>());
                 orderVO.setOrderDetailList(orderDetailList);
 
                 // 构造完成之后插入返回列表
@@ -240,6 +397,18 @@ public class OrderServiceImpl implements OrderService {
         return new PageResult(page.getTotal(), orderVOList);
     }
 
+    /**
+     * 开始分页
+     * 传入游标时从游标之后查询第一页，不使用偏移量；count为false时不执行count查询
+     * @param ordersPageQueryDTO
+     */
+    private void startPage(OrdersPageQueryDTO ordersPageQueryDTO) {
+        boolean keyset = ordersPageQueryDTO.getLastId() != null && ordersPageQueryDTO.getLastOrderTime() != null;
+        int pageNum = keyset ? 1 : ordersPageQueryDTO.getPage();
+        boolean count = !Boolean.FALSE.equals(ordersPageQueryDTO.getCount());
+        PageHelper.startPage(pageNum, ordersPageQueryDTO.getPageSize(), count);
+    }
+
     /**
      * 查询订单详情
      *
@@ -263,6 +432,7 @@ public class OrderServiceImpl implements OrderService {
      * 取消订单
      * @param id
      */
+    @Transactional
     public void cancelOrdecrByUser(Long id){
         Orders orders = orderMapper.getOrderById(id);
 
@@ -277,7 +447,6 @@ public class OrderServiceImpl implements OrderService {
         }
 
         Orders orderUpdate = new Orders();
-        orderUpdate.setId(id);
 
         // 如果在待接单状态下取消订单，需要给用户退款
         if(orders.getStatus().equals(Orders.TO_BE_CONFIRMED)){
@@ -297,7 +466,14 @@ public class OrderServiceImpl implements OrderService {
         orderUpdate.setStatus(Orders.CANCELLED);
         orderUpdate.setCancelTime(LocalDateTime.now());
 
-        orderMapper.update(orderUpdate);
+        // 只修改仍处于查询时状态的订单，期间被超时取消、支付或接单的订单不会被覆盖，营业数据也不会重复累加
+        if (orderMapper.updateStatusBatch(Collections.singletonList(id), orders.getStatus(), orderUpdate) == 0) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        businessStatService.orderStatusChanged(orders, Orders.CANCELLED);
+        if(orders.getStatus().equals(Orders.PENDING_PAYMENT)){
+            orderTimeoutQueue.remove(id);
+        }
     }
 
     /**
@@ -324,7 +500,7 @@ public class OrderServiceImpl implements OrderService {
         }).collect(Collectors.toList());
 
         // 将复制好的购物车数据批量插入表中
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        cartStore.addBatch(shoppingCartList);
     }
 
     /**
@@ -333,7 +509,7 @@ public class OrderServiceImpl implements OrderService {
      * @return
      */
     public PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO) {
-        PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
+        startPage(ordersPageQueryDTO);
 
         Page<Orders> page = orderMapper.page(ordersPageQueryDTO);
 
@@ -348,9 +524,11 @@ public class OrderServiceImpl implements OrderService {
      * @return
      */
     public OrderStatisticsVO statistics() {
-        Integer toBeConfirmed = orderMapper.countByStatus(Orders.TO_BE_CONFIRMED); // 待接单
-        Integer confirmed = orderMapper.countByStatus(Orders.CONFIRMED);// 待派送
-        Integer deliveryInProgress = orderMapper.countByStatus(Orders.DELIVERY_IN_PROGRESS); // 派送中
+        // 一次查询出所有状态的订单数
+        Map<Integer, Integer> countMap = orderStatusCounter.countAll();
+        Integer toBeConfirmed = countMap.getOrDefault(Orders.TO_BE_CONFIRMED, 0); // 待接单
+        Integer confirmed = countMap.getOrDefault(Orders.CONFIRMED, 0);// 待派送
+        Integer deliveryInProgress = countMap.getOrDefault(Orders.DELIVERY_IN_PROGRESS, 0); // 派送中
 
         OrderStatisticsVO orderStatisticsVO = OrderStatisticsVO.builder()
                 .toBeConfirmed(toBeConfirmed)
@@ -365,17 +543,24 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param ordersConfirmDTO
      */
+    @Transactional
     public void confirm(OrdersConfirmDTO ordersConfirmDTO) {
+        Orders ordersDB = orderMapper.getOrderById(ordersConfirmDTO.getId());
+
         Orders orders = Orders.builder()
                 .id(ordersConfirmDTO.getId())
                 .status(Orders.CONFIRMED).build();
         orderMapper.update(orders);
+        if (ordersDB != null) {
+            businessStatService.orderStatusChanged(ordersDB, Orders.CONFIRMED);
+        }
     }
 
     /**
      * 拒单
      * @param ordersRejectionDTO
      */
+    @Transactional
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) {
         Orders orders = orderMapper.getOrderById(ordersRejectionDTO.getId());
 
@@ -404,12 +589,14 @@ public class OrderServiceImpl implements OrderService {
                 .payStatus(Orders.REFUND).build();
 
         orderMapper.update(orderUpdate);
+        businessStatService.orderStatusChanged(orders, Orders.CANCELLED);
     }
 
     /**
      * 取消订单
      * @param ordersCancelDTO
      */
+    @Transactional
     public void cancelOrdecrByAdmin(OrdersCancelDTO ordersCancelDTO) {
         Orders orders = orderMapper.getOrderById(ordersCancelDTO.getId());
 
@@ -433,12 +620,14 @@ public class OrderServiceImpl implements OrderService {
                 .payStatus(Orders.REFUND).build();
 
         orderMapper.update(ordersUpdate);
+        businessStatService.orderStatusChanged(orders, Orders.CANCELLED);
     }
 
     /**
      * 派送订单
      * @param id
      */
+    @Transactional
     public void delivery(Long id) {
         Orders orders = orderMapper.getOrderById(id);
 
@@ -452,12 +641,14 @@ public class OrderServiceImpl implements OrderService {
                 .status(Orders.DELIVERY_IN_PROGRESS).build();
 
         orderMapper.update(orderUpdate);
+        businessStatService.orderStatusChanged(orders, Orders.DELIVERY_IN_PROGRESS);
     }
 
     /**
      * 完成订单
      * @param id
      */
+    @Transactional
     public void complete(Long id) {
         Orders orders = orderMapper.getOrderById(id);
 
@@ -472,6 +663,7 @@ public class OrderServiceImpl implements OrderService {
                 .deliveryTime(LocalDateTime.now()).build();
 
         orderMapper.update(orderUpdate);
+        businessStatService.orderStatusChanged(orders, Orders.COMPLETED);
     }
 
     /**
@@ -494,7 +686,7 @@ public class OrderServiceImpl implements OrderService {
 
         // 通过websocket向客户端浏览器推送消息
         String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        webSocketRelay.publish(WebSocketServer.DEFAULT_SHOP_TOPIC, json);
     }
 
     private List<OrderVO> getOrderVOList(Page<Orders> page) {
@@ -503,11 +695,14 @@ public class OrderServiceImpl implements OrderService {
 
         List<Orders> ordersList = page.getResult();
         if (!CollectionUtils.isEmpty(ordersList)) {
+            // 一次查询出本页所有订单的明细数据，按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+
             for (Orders orders : ordersList) {
                 // 将共同字段复制到OrderVO
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                String orderDishes = getOrderDishesStr(orders);
+                String orderDishes = getOrderDishesStr(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
 
                 // 将订单菜品信息封装到orderVO中，并添加到orderVOList
                 orderVO.setOrderDishes(orderDishes);
@@ -518,15 +713,27 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * 根据订单id获取菜品信息字符串
+     * 批量查询订单的明细数据，并按订单id分组
      *
-     * @param orders
+     * @param ordersList
      * @return
      */
-    private String getOrderDishesStr(Orders orders) {
-        // 查询订单菜品详情信息（订单中的菜品和数量）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        if (CollectionUtils.isEmpty(ordersList)) {
+            return new HashMap<>();
+        }
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        return orderDetailMapper.getByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
 
+    /**
+     * 根据订单明细获取菜品信息字符串
+     *
+     * @param orderDetailList 订单菜品详情信息（订单中的菜品和数量）
+     * @return
+     */
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList) {
         // 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁*3；）
         List<String> orderDishList = orderDetailList.stream().map(x -> {
             String orderDish = x.getName() + "*" + x.getNumber() + ";";
@@ -1,18 +1,30 @@
 package com.sky.service.impl;
 
+import com.sky.constant.MessageConstant;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrderDailyStatDTO;
+import com.sky.dto.UserDailyStatDTO;
+import com.sky.entity.BusinessDailyStat;
 import com.sky.entity.Orders;
+import com.sky.exception.ReportBusinessException;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatService;
 import com.sky.service.ReportService;
-import com.sky.service.WorkspaceService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.ServletOutputStream;
@@ -22,22 +34,39 @@ import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class ReportServiceImpl implements ReportService {
 
+    // 一次最多导出的天数
+    private static final int EXPORT_MAX_DAYS = 366;
+    // 导出时每段并行查询的天数
+    private static final int EXPORT_CHUNK_DAYS = 31;
+    // SXSSF在内存中保留的行数，超出的行写入临时文件
+    private static final int EXPORT_ROW_WINDOW = 100;
+    // 模板中明细数据开始的行号，上一行为明细表头
+    private static final int DETAIL_ROW_BEGIN = 7;
+    // 订单状态名称，下标为状态值减1
+    private static final String[] ORDER_STATUS_NAMES = {"待付款", "待接单", "已接单", "派送中", "已完成", "已取消"};
+
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
     private UserMapper userMapper;
     @Autowired
-    private WorkspaceService workspaceService;
+    private BusinessStatService businessStatService;
+    @Autowired
+    private ThreadPoolTaskExecutor reportExecutor;
 
     /**
      * 统计指定时间区间内的营业额数据
@@ -47,34 +76,19 @@ public class ReportServiceImpl implements ReportService {
      */
     public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
         // 存放从begin到end范围内的每天的日期
-        List<LocalDate> dataList = new ArrayList<>();
-        dataList.add(begin);
+        List<LocalDate> dataList = getDateList(begin, end);
 
-        while(!begin.equals(end)){
-            begin = begin.plusDays(1);
-            dataList.add(begin);
-        }
+        // 一次查询出区间内每天的营业额，营业额是指：状态为“已完成”的订单金额合计
+        Map<LocalDate, OrderDailyStatDTO> statMap = getOrderDailyStatMap(begin, end);
 
-        // 存放每天的营业额
+        // 存放每天的营业额，没有订单的日期补0
         List<Double> turnoverList = new ArrayList<>();
         for(LocalDate date : dataList){
-            // 查询date日期对应的营业额数据，营业额是指：状态为“已完成”的订单金额合计
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            // 构造查询map
-            Map map = new HashMap();
-            map.put("begin", beginTime);
-            map.put("end", endTime);
-            map.put("status", Orders.COMPLETED);
-
-            // select sum(amount) from orders where order_time >= beginTime and order_time <= endTime and status = 5
-            Double turnover = orderMapper.sumByMap(map);
-            turnover = (turnover == null ? 0.0 : turnover);
+            OrderDailyStatDTO stat = statMap.get(date);
+            Double turnover = (stat == null || stat.getTurnover() == null) ? 0.0 : stat.getTurnover();
             turnoverList.add(turnover);
         }
 
-
         return TurnoverReportVO.builder()
                 .dateList(StringUtils.join(dataList, ","))
                 .turnoverList(StringUtils.join(turnoverList, ","))
@@ -89,14 +103,20 @@ public class ReportServiceImpl implements ReportService {
      */
     public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
         // 存放从begin开始到end的每天的日期
-        List<LocalDate> dataList = new ArrayList<>();
+        List<LocalDate> dataList = getDateList(begin, end);
 
-        dataList.add(begin);
+        // 区间为 [begin 00:00, end次日 00:00)，与累计起点的 < begin 首尾相接，边界上的用户只统计一次
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
 
-        while(!begin.equals(end)){
-            begin = begin.plusDays(1);
-            dataList.add(begin);
-        }
+        // 查询begin之前（不含begin）的用户总数，作为累计的起点
+        Map map = new HashMap();
+        map.put("end", beginTime);
+        Integer totalUser = userMapper.countByMap(map);
+
+        // 一次查询出区间内每天的新增用户数量
+        Map<LocalDate, Integer> newUserMap = userMapper.getDailyNewUsers(beginTime, endTime).stream()
+                .collect(Collectors.toMap(UserDailyStatDTO::getDate, UserDailyStatDTO::getNewUsers));
 
         // 存放每天的新增用户数量
         List<Integer> newUserList = new ArrayList<>();
@@ -104,19 +124,8 @@ public class ReportServiceImpl implements ReportService {
         List<Integer> totalUserList = new ArrayList<>();
 
         for(LocalDate date : dataList){
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            Map map = new HashMap();
-            map.put("end", endTime);
-
-            // 总用户数量
-            Integer totalUser = userMapper.countByMap(map);
-
-            map.put("begin", beginTime);
-
-            // 新增用户数量
-            Integer newUser = userMapper.countByMap(map);
+            Integer newUser = newUserMap.getOrDefault(date, 0);
+            totalUser += newUser;
 
             totalUserList.add(totalUser);
             newUserList.add(newUser);
@@ -137,31 +146,19 @@ public class ReportServiceImpl implements ReportService {
      */
     public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
         // 存放从begin开始到end的每天的日期
-        List<LocalDate> dataList = new ArrayList<>();
-
-        dataList.add(begin);
+        List<LocalDate> dataList = getDateList(begin, end);
 
-        while(!begin.equals(end)){
-            begin = begin.plusDays(1);
-            dataList.add(begin);
-        }
+        // 一次查询出区间内每天的订单总数和有效订单数
+        Map<LocalDate, OrderDailyStatDTO> statMap = getOrderDailyStatMap(begin, end);
 
         List<Integer> orderCountList = new ArrayList<>();
         List<Integer> validOrderCountList = new ArrayList<>();
 
-        // 遍历dateList集合，查询每天的有效订单数和订单总数
+        // 遍历dateList集合，没有订单的日期补0
         for (LocalDate date : dataList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            // 查询每天的订单总数 select count(id) from orders where order_time > ? and order_time < ?
-            Integer orderCount = getOrderCount(beginTime, endTime, null);
-
-            // 查询每天的有效订单数 select count(id) from orders where order_time > ? and order_time < ? and status = 5
-            Integer validOrderCount = getOrderCount(beginTime, endTime, Orders.COMPLETED);
-
-            orderCountList.add(orderCount);
-            validOrderCountList.add(validOrderCount);
+            OrderDailyStatDTO stat = statMap.get(date);
+            orderCountList.add(stat == null ? 0 : stat.getOrderCount());
+            validOrderCountList.add(stat == null ? 0 : stat.getValidOrderCount());
         }
 
         // 总订单数
@@ -214,84 +211,262 @@ public class ReportServiceImpl implements ReportService {
 
     /**
      * 导出运营数据报表
+     * 基于模板创建SXSSF工作簿，内存中只保留窗口内的行，其余行写入临时文件；
+     * 每日数据按日期分段提交到线程池并行查询，按日期顺序写入
+     * @param begin
+     * @param end
      * @param response
      */
-    public void exportBusinessData(HttpServletResponse response) {
-        // 1.查询数据库，获得营业数据--最近30天的运营数据
-        LocalDate dateBegin = LocalDate.now().minusDays(30);
-        LocalDate dateEnd = LocalDate.now().minusDays(1);
+    public void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response) {
+        // 校验日期区间，避免一次提交过多的查询任务
+        if (begin.isAfter(end)) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_ERROR);
+        }
+        if (ChronoUnit.DAYS.between(begin, end) >= EXPORT_MAX_DAYS) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_TOO_LONG);
+        }
 
-        // 查询概览数据
-        BusinessDataVO businessDataVO = workspaceService.getBusinessData(LocalDateTime.of(dateBegin, LocalTime.MIN), LocalDateTime.of(dateEnd, LocalTime.MAX));
+        // 1.按日期分段并行查询每天的营业数据
+        List<Future<List<BusinessDailyStat>>> futureList = new ArrayList<>();
+        for (LocalDate chunkBegin = begin; !chunkBegin.isAfter(end); chunkBegin = chunkBegin.plusDays(EXPORT_CHUNK_DAYS)) {
+            LocalDate from = chunkBegin;
+            LocalDate to = chunkBegin.plusDays(EXPORT_CHUNK_DAYS - 1).isAfter(end) ? end : chunkBegin.plusDays(EXPORT_CHUNK_DAYS - 1);
+            futureList.add(reportExecutor.submit(() -> businessStatService.list(from, to)));
+        }
 
         // 2.通过POI将数据写入到Excel文件中
         InputStream in = this.getClass().getClassLoader().getResourceAsStream("template/dataTemplate.xlsx");
+        SXSSFWorkbook excel = null;
 
         try {
             // 基于模版文件创建一个新的Excel文件
-            XSSFWorkbook excel = new XSSFWorkbook(in);
+            XSSFWorkbook template = new XSSFWorkbook(in);
+            XSSFSheet templateSheet = template.getSheet("Sheet1");
+
+            // 记录模板中表头和明细行的样式，删除模板中的明细行，明细数据由SXSSF追加写入
+            CellStyle[] headerStyles = getRowStyles(templateSheet.getRow(DETAIL_ROW_BEGIN - 1));
+            CellStyle[] detailStyles = getRowStyles(templateSheet.getRow(DETAIL_ROW_BEGIN));
+            for (int i = templateSheet.getLastRowNum(); i >= DETAIL_ROW_BEGIN; i--) {
+                XSSFRow row = templateSheet.getRow(i);
+                if (row != null) {
+                    templateSheet.removeRow(row);
+                }
+            }
 
-            // 获取表格文件的sheet
-            XSSFSheet sheet = excel.getSheet("Sheet1");
+            excel = new SXSSFWorkbook(template, EXPORT_ROW_WINDOW);
+            excel.setCompressTempFiles(true);
+
+            // 填充明细数据，按日期顺序等待每段的查询结果
+            Sheet sheet = excel.getSheet("Sheet1");
+            List<BusinessDailyStat> statList = new ArrayList<>();
+            int rowNum = DETAIL_ROW_BEGIN;
+            for (Future<List<BusinessDailyStat>> future : futureList) {
+                for (BusinessDailyStat stat : future.get()) {
+                    BusinessDataVO businessData = businessStatService.summarize(Collections.singletonList(stat));
+                    Row row = sheet.createRow(rowNum++);
+                    createCell(row, 1, detailStyles).setCellValue(stat.getStatDate().toString());
+                    createCell(row, 2, detailStyles).setCellValue(businessData.getTurnover());
+                    createCell(row, 3, detailStyles).setCellValue(businessData.getValidOrderCount());
+                    createCell(row, 4, detailStyles).setCellValue(businessData.getOrderCompletionRate());
+                    createCell(row, 5, detailStyles).setCellValue(businessData.getUnitPrice());
+                    createCell(row, 6, detailStyles).setCellValue(businessData.getNewUsers());
+                    statList.add(stat);
+                }
+            }
 
-            // 填充数据--时间
-            sheet.getRow(1).getCell(1).setCellValue("时间：" + dateBegin + "至" + dateEnd);
+            // 填充数据--时间和概览数据，模板中的行在写出时才序列化，可以在追加明细之后修改
+            BusinessDataVO businessDataVO = businessStatService.summarize(statList);
+            templateSheet.getRow(1).getCell(1).setCellValue("时间：" + begin + "至" + end);
 
             // 获得第4行
-            XSSFRow row = sheet.getRow(3);
+            XSSFRow row = templateSheet.getRow(3);
             row.getCell(2).setCellValue(businessDataVO.getTurnover());
             row.getCell(4).setCellValue(businessDataVO.getOrderCompletionRate());
             row.getCell(6).setCellValue(businessDataVO.getNewUsers());
 
             // 获取第5行
-            row = sheet.getRow(4);
+            row = templateSheet.getRow(4);
             row.getCell(2).setCellValue(businessDataVO.getValidOrderCount());
             row.getCell(4).setCellValue(businessDataVO.getUnitPrice());
 
-            // 填充明细数据
-            for (int i=0; i < 30; i++){
-                LocalDate date = dateBegin.plusDays(i);
-                BusinessDataVO businessData = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
-
-                row  = sheet.getRow(7 + i);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(businessData.getTurnover());
-                row.getCell(3).setCellValue(businessData.getValidOrderCount());
-                row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
-                row.getCell(5).setCellValue(businessData.getUnitPrice());
-                row.getCell(6).setCellValue(businessData.getNewUsers());
-            }
+            LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+            LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
+
+            // 填充菜品销量明细
+            writeSalesSheet(excel, headerStyles, detailStyles, orderMapper.getSalesStatistics(beginTime, endTime));
+
+            // 填充订单明细，流式读取订单，超过单个sheet的行数上限时继续写入新的sheet
+            writeOrderSheet(excel, headerStyles, detailStyles, beginTime, endTime);
 
             // 3.通过输出流将Excel文件下载到客户端浏览器
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
             ServletOutputStream out = response.getOutputStream();
             excel.write(out);
 
             // 关闭资源
             out.flush();
             out.close();
-            excel.close();
 
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (IOException | ExecutionException e) {
+            // 抛出业务异常返回错误信息，不向客户端返回空的或不完整的文件
+            log.error("导出运营数据报表失败", e);
+            throw new ReportBusinessException(MessageConstant.REPORT_EXPORT_FAILED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("导出运营数据报表被中断");
+            throw new ReportBusinessException(MessageConstant.REPORT_EXPORT_FAILED);
+        } finally {
+            futureList.forEach(future -> future.cancel(true));
+            if (excel != null) {
+                // 删除SXSSF写入的临时文件
+                excel.dispose();
+            }
         }
 
     }
 
     /**
-     * 统计订单数量
+     * 写入菜品销量明细sheet
+     * @param excel
+     * @param headerStyles
+     * @param detailStyles
+     * @param salesList
+     */
+    private void writeSalesSheet(SXSSFWorkbook excel, CellStyle[] headerStyles, CellStyle[] detailStyles, List<GoodsSalesDTO> salesList) {
+        Sheet sheet = excel.createSheet("菜品销量明细");
+        createHeader(sheet, headerStyles, "商品名称", "销量", "销售额");
+
+        int rowNum = 1;
+        for (GoodsSalesDTO sales : salesList) {
+            Row row = sheet.createRow(rowNum++);
+            createCell(row, 1, detailStyles).setCellValue(sales.getName());
+            createCell(row, 2, detailStyles).setCellValue(sales.getNumber());
+            createCell(row, 3, detailStyles).setCellValue(sales.getAmount() == null ? 0.0 : sales.getAmount().doubleValue());
+        }
+    }
+
+    /**
+     * 写入订单明细sheet，订单通过流式查询逐行写入
+     * @param excel
+     * @param headerStyles
+     * @param detailStyles
+     * @param beginTime
+     * @param endTime
+     */
+    private void writeOrderSheet(SXSSFWorkbook excel, CellStyle[] headerStyles, CellStyle[] detailStyles,
+                                 LocalDateTime beginTime, LocalDateTime endTime) {
+        String[] header = {"订单号", "下单时间", "订单状态", "实收金额", "收货人", "手机号", "地址"};
+        int lastRowIndex = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+
+        Sheet[] sheet = {excel.createSheet("订单明细")};
+        createHeader(sheet[0], headerStyles, header);
+        int[] rowNum = {1};
+
+        orderMapper.streamByOrderTime(beginTime, endTime, context -> {
+            if (rowNum[0] > lastRowIndex) {
+                sheet[0] = excel.createSheet("订单明细" + (excel.getNumberOfSheets() - 1));
+                createHeader(sheet[0], headerStyles, header);
+                rowNum[0] = 1;
+            }
+
+            Orders orders = context.getResultObject();
+            Row row = sheet[0].createRow(rowNum[0]++);
+            createCell(row, 1, detailStyles).setCellValue(orders.getNumber());
+            createCell(row, 2, detailStyles).setCellValue(orders.getOrderTime().toString());
+            createCell(row, 3, detailStyles).setCellValue(getStatusName(orders.getStatus()));
+            createCell(row, 4, detailStyles).setCellValue(orders.getAmount() == null ? 0.0 : orders.getAmount().doubleValue());
+            createCell(row, 5, detailStyles).setCellValue(orders.getConsignee());
+            createCell(row, 6, detailStyles).setCellValue(orders.getPhone());
+            createCell(row, 7, detailStyles).setCellValue(orders.getAddress());
+        });
+    }
+
+    /**
+     * 在sheet的第一行写入表头，从第二列开始，与模板的布局一致
+     * @param sheet
+     * @param headerStyles
+     * @param titles
+     */
+    private void createHeader(Sheet sheet, CellStyle[] headerStyles, String... titles) {
+        Row row = sheet.createRow(0);
+        for (int i = 0; i < titles.length; i++) {
+            createCell(row, i + 1, headerStyles).setCellValue(titles[i]);
+            sheet.setColumnWidth(i + 1, 20 * 256);
+        }
+    }
+
+    /**
+     * 创建单元格并使用模板中同一列的样式，超出模板列数时使用最后一列的样式
+     * @param row
+     * @param column
+     * @param styles
+     * @return
+     */
+    private Cell createCell(Row row, int column, CellStyle[] styles) {
+        Cell cell = row.createCell(column);
+        CellStyle style = styles[Math.min(column, styles.length - 1)];
+        if (style != null) {
+            cell.setCellStyle(style);
+        }
+        return cell;
+    }
+
+    /**
+     * 获取模板中某一行各列的样式
+     * @param row
+     * @return
+     */
+    private CellStyle[] getRowStyles(XSSFRow row) {
+        CellStyle[] styles = new CellStyle[row.getLastCellNum()];
+        for (int i = 0; i < styles.length; i++) {
+            Cell cell = row.getCell(i);
+            styles[i] = cell == null ? null : cell.getCellStyle();
+        }
+        return styles;
+    }
+
+    /**
+     * 订单状态名称
+     * @param status
+     * @return
+     */
+    private String getStatusName(Integer status) {
+        if (status == null || status < 1 || status > ORDER_STATUS_NAMES.length) {
+            return "";
+        }
+        return ORDER_STATUS_NAMES[status - 1];
+    }
+
+    /**
+     * 获取从begin到end范围内的每天的日期
      * @param begin
      * @param end
-     * @param status
      * @return
      */
-    private Integer getOrderCount(LocalDateTime begin, LocalDateTime end, Integer status) {
-        // 构造查询条件
-        Map map = new HashMap();
-        map.put("begin", begin);
-        map.put("end", end);
-        map.put("status", status);
+    private List<LocalDate> getDateList(LocalDate begin, LocalDate end) {
+        List<LocalDate> dataList = new ArrayList<>();
+        dataList.add(begin);
+
+        while(!begin.equals(end)){
+            begin = begin.plusDays(1);
+            dataList.add(begin);
+        }
+        return dataList;
+    }
+
+    /**
+     * 按天分组查询区间内的订单统计数据，以日期为key
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, OrderDailyStatDTO> getOrderDailyStatMap(LocalDate begin, LocalDate end) {
+        // 区间为 [begin 00:00, end次日 00:00)，begin当天0点和end当天最后时刻的订单都会统计
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
 
-        // 查询满足条件的订单数量
-        return orderMapper.countByMap(map);
+        // select date(order_time), count(id), ... from orders where order_time >= ? and order_time < ? group by date(order_time)
+        return orderMapper.getDailyStatistics(beginTime, endTime).stream()
+                .collect(Collectors.toMap(OrderDailyStatDTO::getDate, stat -> stat));
     }
 }
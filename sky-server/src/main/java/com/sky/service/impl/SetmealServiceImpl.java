@@ -2,6 +2,8 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cache.SetmealCache;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -23,7 +25,10 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -32,11 +37,16 @@ public class SetmealServiceImpl implements SetmealService {
     private final SetmealMapper setmealMapper;
     private final SetmealDishMapper setmealDishMapper;
     private final DishMapper dishMapper;
+    private final CatalogSnapshot catalogSnapshot;
+    private final SetmealCache setmealCache;
 
-    public SetmealServiceImpl(SetmealMapper setmealMapper, SetmealDishMapper setmealDishMapper, DishMapper dishMapper) {
+    public SetmealServiceImpl(SetmealMapper setmealMapper, SetmealDishMapper setmealDishMapper, DishMapper dishMapper,
+                              CatalogSnapshot catalogSnapshot, SetmealCache setmealCache) {
         this.setmealMapper = setmealMapper;
         this.setmealDishMapper = setmealDishMapper;
         this.dishMapper = dishMapper;
+        this.catalogSnapshot = catalogSnapshot;
+        this.setmealCache = setmealCache;
     }
 
     /**
@@ -63,6 +73,8 @@ public class SetmealServiceImpl implements SetmealService {
             System.err.println("不为空！");
         }
 
+        // 事务提交后清理套餐缓存并记录目录变更
+        catalogSnapshot.refreshSetmeals(Collections.singletonList(setmealId));
     }
 
     /**
@@ -96,6 +108,8 @@ public class SetmealServiceImpl implements SetmealService {
 
         // 批量删除setmeal_dish表中的数据项
         setmealDishMapper.deleteBatch(ids);
+
+        catalogSnapshot.refreshSetmeals(ids);
     }
 
     /**
@@ -122,6 +136,7 @@ public class SetmealServiceImpl implements SetmealService {
             setmealDishMapper.insertBatch(setmealDishes);
         }
 
+        catalogSnapshot.refreshSetmeals(Collections.singletonList(setmealId));
     }
 
     /**
@@ -170,16 +185,27 @@ public class SetmealServiceImpl implements SetmealService {
                 .status(status).build();
 
         setmealMapper.update(setmeal);
+
+        catalogSnapshot.refreshSetmeals(Collections.singletonList(id));
     }
 
     /**
-     * 条件查询
+     * 条件查询，只有用户端按分类查询起售套餐时调用，结果按分类缓存（setmealCache::list_{categoryId}）
      * @param setmeal
      * @return
      */
     public List<Setmeal> list(Setmeal setmeal) {
-        List<Setmeal> list = setmealMapper.list(setmeal);
-        return list;
+        return listByCategoryIds(Collections.singletonList(setmeal.getCategoryId())).get(setmeal.getCategoryId());
+    }
+
+    /**
+     * 批量查询多个分类下起售的套餐，一次读取所有分类的套餐缓存，未命中的分类批量查询数据库并回填
+     * @param categoryIds
+     * @return 分类id -> 套餐
+     */
+    public Map<Long, List<Setmeal>> listByCategoryIds(List<Long> categoryIds) {
+        return setmealCache.getAll(categoryIds, missing -> setmealMapper.listByCategoryIds(missing, StatusConstant.ENABLE)
+                .stream().collect(Collectors.groupingBy(Setmeal::getCategoryId)));
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.sky.service.impl;
 
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cart.CartStore;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
@@ -7,9 +9,6 @@ import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
 import com.sky.exception.ShoppingCartBusinessException;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -24,56 +23,46 @@ import java.util.List;
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private CartStore cartStore;
     @Autowired
-    private DishMapper dishMapper;
-    @Autowired
-    private SetmealMapper setmealMapper;
+    private CatalogSnapshot catalogSnapshot;
 
     /**
      * 添加购物车
      * @param shoppingCartDTO
      */
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO){
-        // 判断当前加入购物车中的商品是否已经存在了
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
         Long userId = BaseContext.getCurrentId();
         shoppingCart.setUserId(userId);
 
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-
-        // 如果存在，只需要数量加一
-        if(list != null && list.size() > 0){
-            ShoppingCart cart = list.get(0); // 返回数据最多只能有1项
-            cart.setNumber(cart.getNumber() + 1);
-            // update shopping_cart set number = number + 1 where id = ?
-            shoppingCartMapper.updateNumberById(cart);
-        }else{
-            // 如果不存在，需要插入一条购物车数据
-            Long dishId = shoppingCart.getDishId();
-            if(dishId != null){
-                // 本次添加到购物车的是菜品
-                Dish dish = dishMapper.getById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-            }else {
-                // 本次添加到购物车的是套餐
-                Long setmealId = shoppingCartDTO.getSetmealId();
-                Setmeal setmeal = setmealMapper.getById(setmealId);
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
-            }
-
-            // 设置数据的初始数量和创建时间，插入数据项
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
+        // 如果购物车中已存在该商品，只需要数量加一
+        if(cartStore.increment(shoppingCart)){
+            return;
+        }
 
+        // 如果不存在，需要添加一条购物车数据
+        Long dishId = shoppingCart.getDishId();
+        if(dishId != null){
+            // 本次添加到购物车的是菜品
+            Dish dish = catalogSnapshot.getDish(dishId);
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        }else {
+            // 本次添加到购物车的是套餐
+            Long setmealId = shoppingCartDTO.getSetmealId();
+            Setmeal setmeal = catalogSnapshot.getSetmeal(setmealId);
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
         }
 
+        // 设置数据的初始数量和创建时间，添加数据项
+        shoppingCart.setNumber(1);
+        shoppingCart.setCreateTime(LocalDateTime.now());
+        cartStore.add(shoppingCart);
     }
 
     /**
@@ -81,10 +70,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      * @return
      */
     public List<ShoppingCart> showShoppingCart() {
-        ShoppingCart shoppingCart = ShoppingCart.builder().
-                userId(BaseContext.getCurrentId()).build();
-
-        return shoppingCartMapper.list(shoppingCart);
+        return cartStore.list(BaseContext.getCurrentId());
     }
 
     /**
@@ -92,7 +78,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     public void cleanShoppingCart() {
         Long userId = BaseContext.getCurrentId();
-        shoppingCartMapper.deleteByUserId(userId);
+        cartStore.clean(userId);
     }
 
     /**
@@ -106,20 +92,8 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         Long userId = BaseContext.getCurrentId();
         shoppingCart.setUserId(userId);
 
-        // 根据此购物车对象去表中查询
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-
-        if(list != null && list.size() > 0){
-            ShoppingCart cart = list.get(0);
-
-            // 如果数量大于1，则使其数量减一
-            if(cart.getNumber() > 1){
-                cart.setNumber(cart.getNumber() - 1);
-                shoppingCartMapper.updateNumberById(cart);
-            }else {
-                // 如果数量等于1，则删除对应的项
-                shoppingCartMapper.deleteById(cart.getId());
-            }
+        // 数量大于1时减一，等于1时删除对应的项
+        if(cartStore.decrement(shoppingCart)){
             return;
         }
 
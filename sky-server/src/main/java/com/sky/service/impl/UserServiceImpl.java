@@ -9,12 +9,16 @@ import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.BusinessStatService;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
@@ -32,6 +36,19 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private BusinessStatService businessStatService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     /**
      * 微信用户登录
      * @param userLoginDTO
@@ -51,10 +68,15 @@ public class UserServiceImpl implements UserService {
 
         // 如果是新用户完成自动注册
         if(user==null){
-            user = User.builder()
+            User newUser = User.builder()
                     .openid(openid)
                     .createTime(LocalDateTime.now()).build();
-            userMapper.insert(user);
+            // 新增用户和累加新增用户数在同一事务中提交，调用微信接口期间不占用数据库连接
+            transactionTemplate.executeWithoutResult(status -> {
+                userMapper.insert(newUser);
+                businessStatService.userCreated(newUser);
+            });
+            user = newUser;
         }
 
         // 返回这个用户对象
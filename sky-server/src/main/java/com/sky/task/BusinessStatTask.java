@@ -0,0 +1,35 @@
+package com.sky.task;
+
+import com.sky.service.BusinessStatService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 定时任务类，每日日结营业数据，只在主节点执行
+ */
+@Component
+@Slf4j
+public class BusinessStatTask {
+
+    @Autowired
+    private BusinessStatService businessStatService;
+    @Autowired
+    private TaskLeader taskLeader;
+
+    /**
+     * 按原始订单重新汇总前一天的营业数据，修正增量累加的偏差
+     */
+    @Scheduled(cron = "0 5 0 * * ?") // 每天凌晨零点五分触发一次
+    public void closeDay(){
+        LocalDate date = LocalDate.now().minusDays(1);
+        log.info("日结营业数据：{}", date);
+        taskLeader.run("closeDay", () -> {
+            businessStatService.closeDay(date);
+            return 1;
+        });
+    }
+}
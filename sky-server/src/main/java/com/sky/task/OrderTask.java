@@ -1,46 +1,42 @@
 package com.sky.task;
 
-import com.sky.constant.MessageConstant;
 import com.sky.entity.Orders;
-import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderBatchTransition;
+import com.sky.order.OrderTimeoutQueue;
+import com.sky.properties.OrderTimeoutProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 /**
- * 定时任务类，定时处理订单状态
+ * 定时任务类，定时处理订单状态，只在主节点执行
  */
 @Component
 @Slf4j
 public class OrderTask {
 
     @Autowired
-    private OrderMapper orderMapper;
+    private TaskLeader taskLeader;
+    @Autowired
+    private OrderBatchTransition orderBatchTransition;
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Autowired
+    private OrderTimeoutProperties orderTimeoutProperties;
 
     /**
-     * 处理支付超时订单
+     * 兜底处理支付超时订单
+     * 超时订单通常由超时队列在到期时取消，这里每分钟按id分批扫描一次，取消没有进入队列或放回队列前节点宕机而遗漏的订单
      */
     @Scheduled(cron = "0 * * * * ?") // 每分钟触发一次
     public void processTimeoutOrder(){
         log.info("定时处理超时订单：{}", LocalDateTime.now());
 
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
-
-        // select * from orders where status = ? and order_time < (当前时间-15min)
-        List<Orders> list = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, time);
-
-        if(list != null && list.size() > 0){
-            for(Orders order : list){
-                order.setStatus(Orders.CANCELLED);
-                order.setCancelReason(MessageConstant.ORDER_TIME_OUT);
-                order.setCancelTime(LocalDateTime.now());
-                orderMapper.update(order);
-            }
-        }
+        LocalDateTime time = LocalDateTime.now().plusMinutes(-orderTimeoutProperties.getTimeoutMinutes());
+        taskLeader.run("processTimeoutOrder", () -> orderTimeoutQueue.cancelAll(time));
     }
 
     /**
@@ -52,14 +48,9 @@ public class OrderTask {
 
         LocalDateTime time = LocalDateTime.now().plusMinutes(-60);
 
-        List<Orders> list = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, time);
-
-        if(list != null && list.size() > 0){
-            for(Orders order : list){
-                order.setStatus(Orders.COMPLETED);
-                orderMapper.update(order);
-            }
-        }
-
+        // 按id分批，每批以一条update把仍在派送中的订单改为已完成，并记录送达时间
+        taskLeader.run("processDeliveryOrder", () -> orderBatchTransition.transitionAll(Orders.DELIVERY_IN_PROGRESS, time,
+                Orders.builder().status(Orders.COMPLETED).deliveryTime(LocalDateTime.now()).build(),
+                orderTimeoutProperties.getBatchSize()));
     }
 }
@@ -0,0 +1,148 @@
+package com.sky.task;
+
+import com.sky.properties.TaskProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntSupplier;
+
+/**
+ * 定时任务的主节点选举
+ * 各节点通过redis租约 task_leader 竞争主节点，持有租约的节点定时续约，宕机后租约过期由其他节点接替；
+ * com.sky.task中的定时任务只在主节点执行，避免多个节点重复处理同一批订单
+ */
+@Component
+@Slf4j
+public class TaskLeader {
+
+    // 主节点租约的key
+    public static final String LEADER_KEY = "task_leader";
+
+    // 租约不存在时获取租约，租约属于本节点时续约；返回1表示本节点持有租约
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local owner = redis.call('GET', KEYS[1]) " +
+            "if not owner then redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) return 1 end " +
+            "if owner == ARGV[1] then redis.call('PEXPIRE', KEYS[1], ARGV[2]) return 1 end " +
+            "return 0", Long.class);
+
+    // 租约属于本节点时释放
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private TaskProperties taskProperties;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final TaskMetrics metrics = new TaskMetrics();
+
+    // 本节点持有的租约在本地的到期时间，从发出请求前开始计算，早于redis中的实际到期时间
+    private volatile long leaseDeadline;
+
+    /**
+     * 定时续约，非主节点尝试获取租约
+     */
+    @Scheduled(fixedDelayString = "${sky.task.renew-millis:10000}")
+    public void renew() {
+        acquire();
+    }
+
+    /**
+     * 本节点是否为主节点，租约已到期时先尝试重新获取
+     * @return
+     */
+    public boolean isLeader() {
+        return System.currentTimeMillis() < leaseDeadline || acquire();
+    }
+
+    /**
+     * 只在主节点执行任务，并记录耗时和处理的行数
+     * @param name 任务名
+     * @param job 返回处理的行数
+     */
+    public void run(String name, IntSupplier job) {
+        if (!isLeader()) {
+            metrics.skipped(name);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            int rows = job.getAsInt();
+            metrics.completed(name, System.nanoTime() - start, rows);
+        } catch (RuntimeException e) {
+            metrics.failed(name, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * 定时任务指标
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("leader", System.currentTimeMillis() < leaseDeadline);
+        stats.put("jobs", metrics.snapshot());
+        return stats;
+    }
+
+    @PreDestroy
+    public void release() {
+        if (leaseDeadline == 0) {
+            return;
+        }
+        leaseDeadline = 0;
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LEADER_KEY), nodeId);
+        } catch (Exception e) {
+            log.warn("释放定时任务主节点租约失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取或续约
+     * @return
+     */
+    private boolean acquire() {
+        long start = System.currentTimeMillis();
+        boolean wasLeader = start < leaseDeadline;
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(ACQUIRE_SCRIPT, Collections.singletonList(LEADER_KEY),
+                    nodeId, String.valueOf(taskProperties.getLeaseMillis()));
+        } catch (Exception e) {
+            // redis不可用时不再续约，本地租约到期后停止执行任务
+            log.warn("获取定时任务主节点租约失败：{}", e.getMessage());
+            return false;
+        }
+
+        boolean leader = result != null && result == 1;
+        if (leader) {
+            leaseDeadline = start + taskProperties.getLeaseMillis();
+            if (!wasLeader) {
+                log.info("本节点成为定时任务主节点：{}", nodeId);
+            }
+        } else {
+            leaseDeadline = 0;
+            if (wasLeader) {
+                log.info("本节点不再是定时任务主节点：{}", nodeId);
+            }
+        }
+        return leader;
+    }
+}
@@ -0,0 +1,91 @@
+package com.sky.task;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 定时任务运行指标，按任务名统计执行次数、耗时和处理的行数
+ */
+public class TaskMetrics {
+
+    private final Map<String, JobStats> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次执行
+     * @param name
+     * @param nanos 耗时（纳秒）
+     * @param rows 处理的行数
+     */
+    public void completed(String name, long nanos, int rows) {
+        JobStats stats = get(name);
+        stats.runs.increment();
+        stats.totalNanos.add(nanos);
+        stats.totalRows.add(rows);
+        stats.lastMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        stats.lastRows = rows;
+        stats.lastRunTime = LocalDateTime.now();
+    }
+
+    /**
+     * 记录一次失败的执行
+     * @param name
+     * @param nanos
+     */
+    public void failed(String name, long nanos) {
+        JobStats stats = get(name);
+        stats.failures.increment();
+        stats.totalNanos.add(nanos);
+        stats.lastMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        stats.lastRunTime = LocalDateTime.now();
+    }
+
+    /**
+     * 记录一次因不是主节点而跳过的执行
+     * @param name
+     */
+    public void skipped(String name) {
+        get(name).skipped.increment();
+    }
+
+    /**
+     * 指标快照
+     * @return
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new TreeMap<>();
+        jobs.forEach((name, stats) -> {
+            long runs = stats.runs.sum() + stats.failures.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("runs", stats.runs.sum());
+            map.put("failures", stats.failures.sum());
+            map.put("skipped", stats.skipped.sum());
+            map.put("totalRows", stats.totalRows.sum());
+            map.put("avgMillis", runs == 0 ? 0.0 : (double) TimeUnit.NANOSECONDS.toMicros(stats.totalNanos.sum()) / runs / 1000);
+            map.put("lastMillis", stats.lastMillis);
+            map.put("lastRows", stats.lastRows);
+            map.put("lastRunTime", stats.lastRunTime);
+            result.put(name, map);
+        });
+        return result;
+    }
+
+    private JobStats get(String name) {
+        return jobs.computeIfAbsent(name, key -> new JobStats());
+    }
+
+    private static class JobStats {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder totalRows = new LongAdder();
+        private volatile long lastMillis;
+        private volatile int lastRows;
+        private volatile LocalDateTime lastRunTime;
+    }
+}
@@ -0,0 +1,109 @@
+package com.sky.task;
+
+import com.sky.properties.IdGeneratorProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * id生成器的节点id租约
+ * 每个节点id对应redis中的一个租约 ID_GENERATOR_WORKER_{id}，启动时用SET NX占用一个空闲的节点id并定时续约，
+ * 节点宕机后租约过期，节点id可被新启动的节点复用；1024个节点id都被占用时启动失败，不会与其他节点重复；
+ * 续约失败超过租约有效期后本节点停止生成id，避免租约过期被其他节点占用后生成重复的id
+ */
+@Component
+@Slf4j
+public class WorkerIdLease {
+
+    // 节点id租约的key前缀，后接节点id
+    public static final String LEASE_KEY_PREFIX = "ID_GENERATOR_WORKER_";
+    // 分配节点id的起始位置计数器，使同时启动的节点从不同的节点id开始尝试
+    private static final String CURSOR_KEY = "ID_GENERATOR_WORKER";
+
+    // 租约属于本节点时续约，租约已过期且未被占用时重新占用；返回0表示已被其他节点占用
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "local owner = redis.call('GET', KEYS[1]) " +
+            "if not owner then redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) return 1 end " +
+            "if owner == ARGV[1] then redis.call('PEXPIRE', KEYS[1], ARGV[2]) return 1 end " +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private IdGeneratorProperties idGeneratorProperties;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 本节点占用的节点id，未占用时为-1
+    private volatile long workerId = -1;
+    // 租约在本地的到期时间，从发出请求前开始计算，早于redis中的实际到期时间
+    private volatile long leaseDeadline;
+
+    /**
+     * 占用一个空闲的节点id
+     * @return
+     */
+    public long acquire() {
+        long size = SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+        Long cursor = stringRedisTemplate.opsForValue().increment(CURSOR_KEY);
+        long begin = cursor == null ? 0 : cursor % size;
+        for (long i = 0; i < size; i++) {
+            long id = (begin + i) % size;
+            long start = System.currentTimeMillis();
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(LEASE_KEY_PREFIX + id, nodeId,
+                    idGeneratorProperties.getLeaseMillis(), TimeUnit.MILLISECONDS);
+            if (Boolean.TRUE.equals(acquired)) {
+                leaseDeadline = start + idGeneratorProperties.getLeaseMillis();
+                workerId = id;
+                return id;
+            }
+        }
+        throw new IllegalStateException("节点id已全部被占用，最多同时运行" + size + "个节点");
+    }
+
+    /**
+     * 本节点占用的节点id是否仍然有效
+     * @return
+     */
+    public boolean isValid() {
+        return System.currentTimeMillis() < leaseDeadline;
+    }
+
+    /**
+     * 定时续约
+     */
+    @Scheduled(fixedDelayString = "${sky.id-generator.renew-millis:10000}")
+    public void renew() {
+        long id = workerId;
+        if (id < 0) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(LEASE_KEY_PREFIX + id),
+                    nodeId, String.valueOf(idGeneratorProperties.getLeaseMillis()));
+        } catch (Exception e) {
+            // redis不可用时不更新到期时间，本地租约到期后停止生成id
+            log.warn("续约节点id：{}失败：{}", id, e.getMessage());
+            return;
+        }
+
+        if (result != null && result == 1) {
+            leaseDeadline = start + idGeneratorProperties.getLeaseMillis();
+        } else {
+            leaseDeadline = 0;
+            log.error("节点id：{}已被其他节点占用，本节点停止生成id，需要重启", id);
+        }
+    }
+}
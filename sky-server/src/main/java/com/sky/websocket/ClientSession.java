@@ -0,0 +1,223 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * WebSocket客户端会话
+ * 每个会话有独立的有界发送队列，同一会话同一时刻只有一条消息在发送；
+ * 消息以异步方式发送，由容器在发送完成或超时后回调，回调中再提交下一条消息的发送任务，
+ * 线程池线程不会等待慢速客户端，慢速客户端只会积压自己的队列，不会阻塞调用方和其他会话
+ */
+@Slf4j
+public class ClientSession {
+
+    private final String sid;
+    private final Session session;
+    private final int queueCapacity;
+    private final int closeAfterDrops;
+
+    // 会话订阅的主题
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    // 队列中待发送的消息数
+    private final AtomicInteger depth = new AtomicInteger();
+    // 连续丢弃的消息数，发送成功后清零
+    private final AtomicInteger consecutiveDrops = new AtomicInteger();
+    // 是否有消息正在发送或已提交发送任务
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // 已标记关闭、尚未发送关闭帧的原因，提交到线程池失败时保留，由后续的推送重试
+    private final AtomicReference<CloseReason> pendingClose = new AtomicReference<>();
+
+    public ClientSession(String sid, Session session, int queueCapacity, int closeAfterDrops) {
+        this.sid = sid;
+        this.session = session;
+        this.queueCapacity = queueCapacity;
+        this.closeAfterDrops = closeAfterDrops;
+    }
+
+    public String getSid() {
+        return sid;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public Set<String> getTopics() {
+        return topics;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * 把消息放入发送队列，立即返回
+     * @param message
+     * @param executor
+     * @param metrics
+     * @return 队列已满或会话已关闭时返回false
+     */
+    public boolean offer(String message, Executor executor, WebSocketMetrics metrics) {
+        if (closed.get()) {
+            submitClose(executor);
+            return false;
+        }
+
+        if (depth.incrementAndGet() > queueCapacity) {
+            decrementDepth();
+            metrics.dropped();
+            // 客户端长时间消费不过来，关闭会话，由客户端重连
+            if (consecutiveDrops.incrementAndGet() >= closeAfterDrops) {
+                log.warn("客户端：{}发送队列持续积压，关闭会话", sid);
+                metrics.slowConsumerClosed();
+                closeAsync(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "slow consumer"), executor);
+            }
+            return false;
+        }
+
+        queue.offer(message);
+        schedule(executor, metrics);
+        return true;
+    }
+
+    /**
+     * 没有消息在发送时，提交一个发送任务到线程池
+     * @param executor
+     * @param metrics
+     */
+    private void schedule(Executor executor, WebSocketMetrics metrics) {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> sendNext(executor, metrics));
+        } catch (Exception e) {
+            // 线程池已满，留在队列中等待下一条消息触发发送
+            draining.set(false);
+            log.warn("客户端：{}发送任务提交失败：{}", sid, e.getMessage());
+        }
+    }
+
+    /**
+     * 异步发送队列中的下一条消息，发送完成后在回调中调度下一条
+     * @param executor
+     * @param metrics
+     */
+    private void sendNext(Executor executor, WebSocketMetrics metrics) {
+        String message = closed.get() ? null : queue.poll();
+        if (message == null) {
+            release(executor, metrics);
+            return;
+        }
+
+        decrementDepth();
+        long start = System.nanoTime();
+        try {
+            session.getAsyncRemote().sendText(message, result -> {
+                if (result.isOK()) {
+                    metrics.sent(System.nanoTime() - start);
+                    consecutiveDrops.set(0);
+                } else {
+                    failed(result.getException(), executor, metrics);
+                }
+                release(executor, metrics);
+            });
+        } catch (Exception e) {
+            failed(e, executor, metrics);
+            release(executor, metrics);
+        }
+    }
+
+    /**
+     * 队列中待发送的消息数减一；关闭会话时已清零，之后完成的出队不再减为负数
+     */
+    private void decrementDepth() {
+        depth.updateAndGet(d -> d > 0 ? d - 1 : 0);
+    }
+
+    /**
+     * 释放发送标记，之后又有消息入队时重新调度
+     * @param executor
+     * @param metrics
+     */
+    private void release(Executor executor, WebSocketMetrics metrics) {
+        draining.set(false);
+        if (!closed.get() && !queue.isEmpty()) {
+            schedule(executor, metrics);
+        }
+    }
+
+    /**
+     * 发送失败或超时，关闭会话
+     * @param e
+     * @param executor
+     * @param metrics
+     */
+    private void failed(Throwable e, Executor executor, WebSocketMetrics metrics) {
+        log.warn("向客户端：{}发送消息失败：{}", sid, e == null ? null : e.getMessage());
+        metrics.failed();
+        closeAsync(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "send failed"), executor);
+    }
+
+    /**
+     * 标记会话关闭并清空发送队列，关闭帧在线程池中发送，不阻塞调用方和容器的回调线程
+     * @param reason
+     * @param executor
+     */
+    public void closeAsync(CloseReason reason, Executor executor) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        queue.clear();
+        depth.set(0);
+        pendingClose.set(reason);
+        submitClose(executor);
+    }
+
+    /**
+     * 提交发送关闭帧的任务；线程池已满时保留关闭原因，由下一次推送重试，不在调用方线程中发送
+     * @param executor
+     */
+    private void submitClose(Executor executor) {
+        if (pendingClose.get() == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                CloseReason reason = pendingClose.getAndSet(null);
+                if (reason != null) {
+                    closeSession(reason);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("客户端：{}关闭任务提交失败，等待下次推送时重试：{}", sid, e.getMessage());
+        }
+    }
+
+    private void closeSession(CloseReason reason) {
+        try {
+            session.close(reason);
+        } catch (IOException e) {
+            log.warn("关闭客户端：{}会话失败：{}", sid, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.sky.websocket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebSocket推送指标
+ */
+public class WebSocketMetrics {
+
+    // 发送成功的消息数
+    private final LongAdder sent = new LongAdder();
+    // 发送成功的消息累计耗时（纳秒）
+    private final LongAdder sendNanos = new LongAdder();
+    // 单条消息的最大发送耗时（纳秒）
+    private final LongAccumulator maxSendNanos = new LongAccumulator(Math::max, 0);
+    // 因队列已满被丢弃的消息数
+    private final LongAdder dropped = new LongAdder();
+    // 发送失败的消息数
+    private final LongAdder failed = new LongAdder();
+    // 因消费过慢被关闭的会话数
+    private final LongAdder slowConsumerClosed = new LongAdder();
+
+    public void sent(long nanos) {
+        sent.increment();
+        sendNanos.add(nanos);
+        maxSendNanos.accumulate(nanos);
+    }
+
+    public void dropped() {
+        dropped.increment();
+    }
+
+    public void failed() {
+        failed.increment();
+    }
+
+    public void slowConsumerClosed() {
+        slowConsumerClosed.increment();
+    }
+
+    /**
+     * 指标快照
+     * @param sessions 当前会话数
+     * @param queueDepth 所有会话待发送的消息总数
+     * @param maxQueueDepth 单个会话待发送消息数的最大值
+     * @return
+     */
+    public Map<String, Object> snapshot(int sessions, long queueDepth, int maxQueueDepth) {
+        long sentCount = sent.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions);
+        stats.put("queueDepth", queueDepth);
+        stats.put("maxQueueDepth", maxQueueDepth);
+        stats.put("sent", sentCount);
+        stats.put("dropped", dropped.sum());
+        stats.put("failed", failed.sum());
+        stats.put("slowConsumerClosed", slowConsumerClosed.sum());
+        stats.put("avgSendMillis", sentCount == 0 ? 0.0 : (double) TimeUnit.NANOSECONDS.toMicros(sendNanos.sum()) / sentCount / 1000);
+        stats.put("maxSendMillis", TimeUnit.NANOSECONDS.toMillis(maxSendNanos.get()));
+        return stats;
+    }
+}
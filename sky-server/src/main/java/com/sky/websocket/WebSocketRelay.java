@@ -0,0 +1,144 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket消息跨节点转发
+ * 推送消息先发布到redis频道，每个节点订阅该频道并推送给本节点上连接的会话；
+ * 短时间内的多条消息合并为一次发布，发布失败时退化为只推送本节点的会话
+ */
+@Component
+@Slf4j
+public class WebSocketRelay implements MessageListener {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private WebSocketServer webSocketServer;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    // 待发布的消息
+    private final Queue<JSONObject> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferSize = new AtomicInteger();
+    // 是否已安排了一次发布
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "websocket-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * 向所有节点上订阅了主题的会话推送消息，立即返回
+     * @param topic
+     * @param message
+     */
+    public void publish(String topic, String message) {
+        JSONObject item = new JSONObject();
+        item.put("topic", topic);
+        item.put("message", message);
+        buffer.offer(item);
+
+        try {
+            if (bufferSize.incrementAndGet() >= webSocketProperties.getRelayBatchSize()) {
+                // 积攒的消息达到上限，立即发布
+                scheduler.execute(this::flush);
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                scheduler.schedule(this::flush, webSocketProperties.getRelayBatchMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            // 应用关闭期间直接发布
+            flush();
+        }
+    }
+
+    /**
+     * 把积攒的消息合并为json数组，按批次上限分多次发布
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        while (!buffer.isEmpty()) {
+            JSONArray batch = new JSONArray();
+            JSONObject item;
+            while (batch.size() < webSocketProperties.getRelayBatchSize() && (item = buffer.poll()) != null) {
+                bufferSize.decrementAndGet();
+                batch.add(item);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                stringRedisTemplate.convertAndSend(webSocketProperties.getRelayChannel(), batch.toJSONString());
+            } catch (Exception e) {
+                // redis不可用时至少保证本节点的会话能收到消息
+                log.warn("发布WebSocket消息失败，只推送本节点：{}", e.getMessage());
+                deliver(batch);
+            }
+        }
+    }
+
+    /**
+     * 收到redis频道中的消息，推送给本节点的会话
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            deliver(JSON.parseArray(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            log.warn("解析转发的WebSocket消息失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 推送给本节点的会话，未指定主题的消息推送给所有会话
+     * @param batch
+     */
+    private void deliver(JSONArray batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            JSONObject item = batch.getJSONObject(i);
+            String topic = item.getString("topic");
+            String message = item.getString("message");
+            if (topic == null) {
+                webSocketServer.sendToAllClient(message);
+            } else {
+                webSocketServer.sendToTopic(topic, message);
+            }
+        }
+    }
+}
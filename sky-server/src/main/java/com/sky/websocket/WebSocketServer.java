@@ -1,43 +1,130 @@
 package com.sky.websocket;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * WebSocket服务
+ * 端点实例由容器为每个连接创建，会话、线程池等共享状态保存在静态字段中；
+ * 会话按主题订阅消息，主题到会话的索引使推送只遍历订阅者，主题格式为 shop:{id}、role:{name}、employee:{id}
  */
 @Component
 @ServerEndpoint("/ws/{sid}")
+@Slf4j
 public class WebSocketServer {
 
+    // tomcat中阻塞发送超时时间的会话属性，用于发送关闭帧
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    // 未订阅任何主题的会话默认订阅的店铺主题
+    public static final String DEFAULT_SHOP_TOPIC = "shop:default";
+    // 允许订阅的主题前缀
+    private static final String[] TOPIC_PREFIXES = {"shop:", "role:", "employee:"};
+    // 单个会话最多订阅的主题数
+    private static final int MAX_TOPICS_PER_SESSION = 16;
+
     //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static final Map<String, ClientSession> sessionMap = new ConcurrentHashMap<>();
+
+    //主题到订阅会话的索引
+    private static final Map<String, Set<ClientSession>> topicMap = new ConcurrentHashMap<>();
+
+    private static final WebSocketMetrics metrics = new WebSocketMetrics();
+
+    private static ThreadPoolTaskExecutor websocketExecutor;
+
+    private static WebSocketProperties webSocketProperties;
+
+    @Autowired
+    public void setWebsocketExecutor(ThreadPoolTaskExecutor websocketExecutor) {
+        WebSocketServer.websocketExecutor = websocketExecutor;
+    }
+
+    @Autowired
+    public void setWebSocketProperties(WebSocketProperties webSocketProperties) {
+        WebSocketServer.webSocketProperties = webSocketProperties;
+    }
 
     /**
      * 连接建立成功调用的方法
+     * 通过连接参数topic订阅主题，可重复或以逗号分隔，例如 /ws/{sid}?topic=shop:1,role:admin
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        log.info("客户端：{}建立连接", sid);
+        session.getUserProperties().put(BLOCKING_SEND_TIMEOUT, webSocketProperties.getSendTimeoutMillis());
+        session.getAsyncRemote().setSendTimeout(webSocketProperties.getSendTimeoutMillis());
+        ClientSession clientSession = new ClientSession(sid, session,
+                webSocketProperties.getQueueCapacity(), webSocketProperties.getCloseAfterDrops());
+
+        List<String> params = session.getRequestParameterMap().get("topic");
+        if (params != null) {
+            params.forEach(param -> Arrays.stream(param.split(","))
+                    .forEach(topic -> subscribe(clientSession, topic.trim())));
+        }
+        if (clientSession.getTopics().isEmpty()) {
+            subscribe(clientSession, DEFAULT_SHOP_TOPIC);
+        }
+
+        // 同一sid重连，旧会话在线程池中关闭，不占用容器线程
+        ClientSession old = sessionMap.put(sid, clientSession);
+        if (old != null && old.getSession() != session) {
+            unsubscribeAll(old);
+            old.closeAsync(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "replaced"), websocketExecutor);
+        }
     }
 
     /**
      * 收到客户端消息后调用的方法
+     * 订阅消息格式：{"type":"subscribe","topic":"shop:1"}，取消订阅的type为unsubscribe
      *
      * @param message 客户端发送过来的消息
      */
     @OnMessage
-    public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+    public void onMessage(Session session, String message, @PathParam("sid") String sid) {
+        log.info("收到来自客户端：{}的信息：{}", sid, message);
+
+        ClientSession clientSession = sessionMap.get(sid);
+        if (clientSession == null || clientSession.getSession() != session) {
+            return;
+        }
+
+        JSONObject jsonObject;
+        try {
+            jsonObject = JSON.parseObject(message);
+        } catch (Exception e) {
+            return;
+        }
+        if (jsonObject == null) {
+            return;
+        }
+
+        String type = jsonObject.getString("type");
+        String topic = jsonObject.getString("topic");
+        if ("subscribe".equals(type)) {
+            subscribe(clientSession, topic);
+        } else if ("unsubscribe".equals(type)) {
+            unsubscribe(clientSession, topic);
+        }
     }
 
     /**
@@ -46,26 +133,148 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开：{}", sid);
+        remove(session, sid);
     }
 
     /**
-     * 群发
+     * 连接异常调用的方法
+     *
+     * @param session
+     * @param sid
+     * @param error
+     */
+    @OnError
+    public void onError(Session session, @PathParam("sid") String sid, Throwable error) {
+        log.warn("客户端：{}连接异常：{}", sid, error.getMessage());
+        remove(session, sid);
+    }
+
+    /**
+     * 群发，消息放入每个会话的发送队列后立即返回
      *
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
+        for (ClientSession clientSession : sessionMap.values()) {
+            clientSession.offer(message, websocketExecutor, metrics);
+        }
+    }
+
+    /**
+     * 向订阅了主题的会话推送消息，只遍历该主题的订阅者
+     *
+     * @param topic
+     * @param message
+     */
+    public void sendToTopic(String topic, String message) {
+        Set<ClientSession> subscribers = topicMap.get(topic);
+        if (subscribers == null) {
+            return;
+        }
+        for (ClientSession clientSession : subscribers) {
+            clientSession.offer(message, websocketExecutor, metrics);
+        }
+    }
+
+    /**
+     * 推送指标
+     * @return
+     */
+    public Map<String, Object> stats() {
+        long queueDepth = 0;
+        int maxQueueDepth = 0;
+        for (ClientSession clientSession : sessionMap.values()) {
+            int depth = clientSession.getDepth();
+            queueDepth += depth;
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+        }
+        Map<String, Object> stats = metrics.snapshot(sessionMap.size(), queueDepth, maxQueueDepth);
+        stats.put("topics", topicMap.size());
+        return stats;
+    }
+
+    /**
+     * 移除会话，同一sid重连后旧连接的关闭事件不会移除新会话
+     * 先从会话表中移除，再在线程池中关闭，不在map的原子操作中执行阻塞的关闭
+     * @param session
+     * @param sid
+     */
+    private void remove(Session session, String sid) {
+        ClientSession clientSession = sessionMap.get(sid);
+        if (clientSession == null || clientSession.getSession() != session
+                || !sessionMap.remove(sid, clientSession)) {
+            return;
+        }
+        unsubscribeAll(clientSession);
+        clientSession.closeAsync(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "closed"), websocketExecutor);
+    }
+
+    /**
+     * 订阅主题，主题前缀不合法或超过订阅数上限时忽略
+     * @param clientSession
+     * @param topic
+     */
+    private void subscribe(ClientSession clientSession, String topic) {
+        if (!isValidTopic(topic)) {
+            log.warn("客户端：{}订阅的主题不合法：{}", clientSession.getSid(), topic);
+            return;
+        }
+        if (clientSession.getTopics().size() >= MAX_TOPICS_PER_SESSION || !clientSession.getTopics().add(topic)) {
+            return;
+        }
+        topicMap.compute(topic, (key, subscribers) -> {
+            if (subscribers == null) {
+                subscribers = ConcurrentHashMap.newKeySet();
+            }
+            subscribers.add(clientSession);
+            return subscribers;
+        });
+        // 订阅期间会话已关闭，撤销本次订阅，避免索引中残留已关闭的会话
+        if (clientSession.isClosed()) {
+            unsubscribe(clientSession, topic);
+        }
+    }
+
+    /**
+     * 取消订阅主题，主题没有订阅者时从索引中移除
+     * @param clientSession
+     * @param topic
+     */
+    private void unsubscribe(ClientSession clientSession, String topic) {
+        if (topic == null || !clientSession.getTopics().remove(topic)) {
+            return;
+        }
+        topicMap.computeIfPresent(topic, (key, subscribers) -> {
+            subscribers.remove(clientSession);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * 取消会话订阅的所有主题
+     * @param clientSession
+     */
+    private void unsubscribeAll(ClientSession clientSession) {
+        new ArrayList<>(clientSession.getTopics()).forEach(topic -> unsubscribe(clientSession, topic));
+    }
+
+    /**
+     * 校验主题格式
+     * @param topic
+     * @return
+     */
+    private boolean isValidTopic(String topic) {
+        if (topic == null) {
+            return false;
+        }
+        for (String prefix : TOPIC_PREFIXES) {
+            if (topic.startsWith(prefix) && topic.length() > prefix.length()) {
+                return true;
             }
         }
+        return false;
     }
 
 }
@@ -0,0 +1,78 @@
+package com.sky.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheTagIndexTest {
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    private CacheTagIndex cacheTagIndex;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        cacheTagIndex = new CacheTagIndex();
+        ReflectionTestUtils.setField(cacheTagIndex, "stringRedisTemplate", stringRedisTemplate);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    /**
+     * 分批删除登记的所有key和标签set，之后重新写入的key重新登记
+     */
+    @Test
+    void invalidateDeletesTaggedKeysAndTag() {
+        Map<String, String> values = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            values.put("dish_" + i, "v");
+            keys.add("dish_" + i);
+        }
+        stringRedisTemplate.opsForValue().multiSet(values);
+        cacheTagIndex.tagAll("dish", keys);
+        stringRedisTemplate.opsForValue().set("other", "v");
+
+        assertEquals(2500, cacheTagIndex.invalidate("dish"));
+        assertEquals(0, stringRedisTemplate.countExistingKeys(keys));
+        assertFalse(stringRedisTemplate.hasKey(CacheTagIndex.TAG_PREFIX + "dish"));
+        assertTrue(stringRedisTemplate.hasKey("other"));
+
+        // 清理之后重新写入并登记的key，下次清理时同样会被删除
+        stringRedisTemplate.opsForValue().set("dish_1", "v");
+        cacheTagIndex.tag("dish", "dish_1");
+        assertEquals(1, cacheTagIndex.invalidate("dish"));
+        assertFalse(stringRedisTemplate.hasKey("dish_1"));
+        assertEquals(0, cacheTagIndex.invalidate("dish"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.sky.cache;
+
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.result.Result;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 缓存值序列化格式的基准测试：jdk、smile、json 三种格式写入的字节数和一次序列化加反序列化的耗时
+ * 负载为缓存中常见的值：一个分类的菜品列表（含口味）、一个分类的套餐列表、包装了菜品列表的Result
+ * 默认跳过，运行方式：mvn test -pl sky-server -Dtest=CompactRedisSerializerBenchmarkTest -Dbenchmark=true
+ */
+class CompactRedisSerializerBenchmarkTest {
+
+    private static final int WARM_UP = 1_000;
+    private static final int ROUNDS = 1_000;
+
+    private static final String[] FORMATS = {
+            CompactRedisSerializer.JDK, CompactRedisSerializer.SMILE, CompactRedisSerializer.JSON};
+
+    @Test
+    void benchmark() {
+        // 基准测试耗时较长，只在 -Dbenchmark=true 时运行
+        Assumptions.assumeTrue(Boolean.getBoolean("benchmark"));
+
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("DishVO x20", dishes(20));
+        payloads.put("Setmeal x10", setmeals(10));
+        payloads.put("Result<DishVO x20>", Result.success(dishes(20)));
+
+        // 先对所有负载和格式预热一遍，避免先测量的组合承担JIT编译的开销
+        for (Object value : payloads.values()) {
+            for (String format : FORMATS) {
+                time(new CompactRedisSerializer(format, getClass().getClassLoader()), value);
+            }
+        }
+
+        for (Map.Entry<String, Object> payload : payloads.entrySet()) {
+            Map<String, Integer> sizes = new LinkedHashMap<>();
+            for (String format : FORMATS) {
+                CompactRedisSerializer serializer = new CompactRedisSerializer(format, getClass().getClassLoader());
+                byte[] bytes = serializer.serialize(payload.getValue());
+                // 三种格式都能还原出相同的值
+                assertEquals(payload.getValue(), serializer.deserialize(bytes));
+
+                long nanos = time(serializer, payload.getValue());
+                sizes.put(format, bytes.length);
+                System.out.printf("%-20s %-5s %6d bytes %9.0f ns/op%n", payload.getKey(), format, bytes.length, (double) nanos);
+            }
+            // smile只写一次重复的属性名和类名，体积小于jdk序列化和json
+            assertTrue(sizes.get(CompactRedisSerializer.SMILE) < sizes.get(CompactRedisSerializer.JDK));
+            assertTrue(sizes.get(CompactRedisSerializer.SMILE) < sizes.get(CompactRedisSerializer.JSON));
+        }
+    }
+
+    /**
+     * 预热后执行ROUNDS次序列化加反序列化，返回平均每次的耗时（纳秒）
+     */
+    private long time(CompactRedisSerializer serializer, Object value) {
+        Object sink = null;
+        for (int i = 0; i < WARM_UP; i++) {
+            sink = serializer.deserialize(serializer.serialize(value));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink = serializer.deserialize(serializer.serialize(value));
+        }
+        long nanos = (System.nanoTime() - start) / ROUNDS;
+        assertEquals(value, sink);
+        return nanos;
+    }
+
+    private List<DishVO> dishes(int size) {
+        List<DishVO> list = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            list.add(DishVO.builder()
+                    .id(id)
+                    .name("菜品" + id)
+                    .categoryId(1L)
+                    .price(new BigDecimal("38.00"))
+                    .image("https://sky-take-out.oss-cn-beijing.aliyuncs.com/dish-" + id + ".png")
+                    .description("精选食材，现点现做")
+                    .status(1)
+                    .updateTime(LocalDateTime.of(2024, 1, 1, 12, 30, 15))
+                    .categoryName("热菜")
+                    .flavors(new ArrayList<>(Arrays.asList(
+                            DishFlavor.builder().id(id * 2).dishId(id).name("辣度")
+                                    .value("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]").build(),
+                            DishFlavor.builder().id(id * 2 + 1).dishId(id).name("忌口")
+                                    .value("[\"不要葱\",\"不要蒜\",\"不要香菜\"]").build())))
+                    .build());
+        }
+        return list;
+    }
+
+    private List<Setmeal> setmeals(int size) {
+        List<Setmeal> list = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            list.add(Setmeal.builder()
+                    .id(id)
+                    .categoryId(2L)
+                    .name("套餐" + id)
+                    .price(new BigDecimal("88.00"))
+                    .status(1)
+                    .description("两人份套餐")
+                    .image("https://sky-take-out.oss-cn-beijing.aliyuncs.com/setmeal-" + id + ".png")
+                    .createTime(LocalDateTime.of(2024, 1, 1, 9, 0, 0))
+                    .updateTime(LocalDateTime.of(2024, 1, 2, 10, 0, 0))
+                    .createUser(1L)
+                    .updateUser(1L)
+                    .build());
+        }
+        return list;
+    }
+}
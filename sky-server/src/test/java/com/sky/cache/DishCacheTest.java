@@ -0,0 +1,137 @@
+package com.sky.cache;
+
+import com.sky.properties.CatalogProperties;
+import com.sky.properties.NearCacheProperties;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 两个节点共用一个redis：管理端节点修改菜品后，用户端节点按新的目录版本号读取时不再使用校验间隔内的近端缓存，
+ * 修改提交之前开始的加载在清理之后写回的旧数据也不会被读取
+ */
+class DishCacheTest {
+
+    private static final Long CATEGORY_ID = 1L;
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    private DishCache userCache;
+    private DishCache adminCache;
+    private CatalogVersion adminVersion;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new CompactRedisSerializer("smile", getClass().getClassLoader()));
+        redisTemplate.afterPropertiesSet();
+
+        userCache = dishCache();
+        adminCache = dishCache();
+        adminVersion = new CatalogVersion();
+        ReflectionTestUtils.setField(adminVersion, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(adminVersion, "catalogProperties", new CatalogProperties());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void revalidatesNearCacheForNewerCatalogVersion() {
+        AtomicInteger loads = new AtomicInteger();
+        long before = adminVersion.latest();
+        assertEquals("10", price(userCache.get(CATEGORY_ID, before, () -> dishes("10", loads))));
+
+        // 管理端修改菜品：先清理菜品缓存，再递增目录版本号
+        adminCache.evictAll();
+        long after = adminVersion.increment(Collections.singletonList("dish_1"));
+
+        // 仍按旧目录版本号读取时，校验间隔内直接使用近端缓存
+        assertEquals("10", price(userCache.get(CATEGORY_ID, before, () -> dishes("12", loads))));
+        assertEquals(1, loads.get());
+        // 按新目录版本号读取时立即重新校验，读到修改后的菜品
+        assertEquals("12", price(userCache.get(CATEGORY_ID, after, () -> dishes("12", loads))));
+        assertEquals(2, loads.get());
+        // 重新校验后的近端缓存可以直接用于新目录版本号
+        assertEquals("12", price(userCache.get(CATEGORY_ID, after, () -> dishes("14", loads))));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void ignoresStaleValueWrittenBackAfterEviction() {
+        AtomicInteger loads = new AtomicInteger();
+        long version = adminVersion.latest();
+
+        // 加载在修改提交之前读到旧菜品，在清理之后才写回redis
+        adminCache.get(CATEGORY_ID, version, () -> {
+            adminCache.evictAll();
+            return dishes("10", loads);
+        });
+        long after = adminVersion.increment(Collections.singletonList("dish_1"));
+
+        // 写回的值带有清理之前的版本号，其他节点读取时视为未命中
+        assertEquals("12", price(userCache.get(CATEGORY_ID, after, () -> dishes("12", loads))));
+        assertEquals(2, loads.get());
+        Object value = redisTemplate.opsForValue().get(DishCache.KEY_PREFIX + CATEGORY_ID);
+        assertEquals("12", price(VersionedValue.valuesIfCurrent(value, ((VersionedValue<?>) value).getVersion(), DishVO.class)));
+    }
+
+    private DishCache dishCache() {
+        DishCache dishCache = new DishCache();
+        CacheTagIndex cacheTagIndex = new CacheTagIndex();
+        ReflectionTestUtils.setField(cacheTagIndex, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(dishCache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(dishCache, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(dishCache, "nearCacheProperties", new NearCacheProperties());
+        ReflectionTestUtils.setField(dishCache, "cacheTagIndex", cacheTagIndex);
+        dishCache.init();
+        return dishCache;
+    }
+
+    private static List<DishVO> dishes(String price, AtomicInteger loads) {
+        loads.incrementAndGet();
+        DishVO dishVO = new DishVO();
+        dishVO.setId(1L);
+        dishVO.setCategoryId(CATEGORY_ID);
+        dishVO.setPrice(new BigDecimal(price));
+        return Collections.singletonList(dishVO);
+    }
+
+    private static String price(List<DishVO> dishes) {
+        return dishes.get(0).getPrice().toPlainString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.sky.cache;
+
+import com.sky.interceptor.CatalogETagInterceptor;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.properties.NearCacheProperties;
+import com.sky.result.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 响应缓存的ETag取自实际写出的条目的版本号，与拦截器读到的版本号无关
+ */
+class ResponseCacheTest {
+
+    private CatalogVersion catalogVersion;
+    private CatalogETagInterceptor interceptor;
+    private ResponseCache responseCache;
+
+    @BeforeEach
+    void setUp() {
+        catalogVersion = mock(CatalogVersion.class);
+        interceptor = new CatalogETagInterceptor();
+        ReflectionTestUtils.setField(interceptor, "catalogVersion", catalogVersion);
+
+        responseCache = new ResponseCache();
+        ReflectionTestUtils.setField(responseCache, "catalogVersion", catalogVersion);
+        ReflectionTestUtils.setField(responseCache, "jacksonObjectMapper", new JacksonObjectMapper());
+        ReflectionTestUtils.setField(responseCache, "nearCacheProperties", new NearCacheProperties());
+        responseCache.init();
+    }
+
+    @Test
+    void etagDescribesServedEntry() throws Exception {
+        // 拦截器读到版本号5之后目录版本号变为6，写出的是按版本号6生成的内容
+        when(catalogVersion.current()).thenReturn(5L, 6L);
+        MockHttpServletResponse response = get(null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("v6", new JacksonObjectMapper().readTree(response.getContentAsByteArray()).get("data").asText());
+        assertEquals(CatalogETagInterceptor.etag(6), response.getHeader("ETag"));
+    }
+
+    @Test
+    void notModifiedWhenEntryMatches() throws Exception {
+        when(catalogVersion.current()).thenReturn(6L);
+        String etag = get(null).getHeader("ETag");
+
+        // 拦截器仍读到旧版本号5时，由缓存条目的版本号判断是否修改
+        when(catalogVersion.current()).thenReturn(5L, 6L);
+        MockHttpServletResponse response = get(etag);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(etag, response.getHeader("ETag"));
+        assertEquals(1L, responseCache.stats().get("notModified"));
+    }
+
+    private MockHttpServletResponse get(String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/category/list");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HandlerMethod handler = new HandlerMethod(this, getClass().getDeclaredMethod("setUp"));
+        if (interceptor.preHandle(request, response, handler)) {
+            responseCache.write(request, response, "category_1", version -> Result.success("v" + version));
+        }
+        return response;
+    }
+}
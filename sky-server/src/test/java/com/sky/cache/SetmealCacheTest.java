@@ -0,0 +1,114 @@
+package com.sky.cache;
+
+import com.sky.entity.Setmeal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 修改套餐提交之前开始的加载在清理之后写回的旧数据不会被读取
+ */
+class SetmealCacheTest {
+
+    private static final Long CATEGORY_ID = 2L;
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private RedisTemplate<Object, Object> redisTemplate;
+    private SetmealCache userCache;
+    private SetmealCache adminCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new CompactRedisSerializer("smile", getClass().getClassLoader()));
+        redisTemplate.afterPropertiesSet();
+
+        userCache = setmealCache();
+        adminCache = setmealCache();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void ignoresStaleValueWrittenBackAfterEviction() {
+        AtomicInteger loads = new AtomicInteger();
+
+        // 加载在修改提交之前读到旧套餐，在清理之后才写回redis
+        userCache.getAll(Collections.singletonList(CATEGORY_ID), ids -> {
+            adminCache.evictAll();
+            return setmeals("30", loads);
+        });
+
+        // 写回的值带有清理之前的版本号，视为未命中
+        assertEquals("32", price(userCache.getAll(Collections.singletonList(CATEGORY_ID), ids -> setmeals("32", loads))));
+        assertEquals(2, loads.get());
+        // 以当前版本号回填的值可以命中
+        assertEquals("32", price(userCache.getAll(Collections.singletonList(CATEGORY_ID), ids -> setmeals("34", loads))));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void treatsUnexpectedValueAsMiss() {
+        AtomicInteger loads = new AtomicInteger();
+        List<Object> values = new ArrayList<>();
+        values.add("不是套餐");
+        redisTemplate.opsForValue().set(SetmealCache.KEY_PREFIX + CATEGORY_ID, new VersionedValue<>("0", values));
+
+        assertEquals("30", price(userCache.getAll(Collections.singletonList(CATEGORY_ID), ids -> setmeals("30", loads))));
+        assertEquals(1, loads.get());
+    }
+
+    private SetmealCache setmealCache() {
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        CacheTagIndex cacheTagIndex = new CacheTagIndex();
+        ReflectionTestUtils.setField(cacheTagIndex, "stringRedisTemplate", stringRedisTemplate);
+        SetmealCache setmealCache = new SetmealCache();
+        ReflectionTestUtils.setField(setmealCache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(setmealCache, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(setmealCache, "cacheTagIndex", cacheTagIndex);
+        return setmealCache;
+    }
+
+    private static Map<Long, List<Setmeal>> setmeals(String price, AtomicInteger loads) {
+        loads.incrementAndGet();
+        Setmeal setmeal = Setmeal.builder().id(1L).categoryId(CATEGORY_ID).price(new BigDecimal(price)).build();
+        return Collections.singletonMap(CATEGORY_ID, Collections.singletonList(setmeal));
+    }
+
+    private static String price(Map<Long, List<Setmeal>> setmeals) {
+        return setmeals.get(CATEGORY_ID).get(0).getPrice().toPlainString();
+    }
+}
@@ -0,0 +1,211 @@
+package com.sky.controller.user;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sky.cache.CacheTagIndex;
+import com.sky.cache.CatalogVersion;
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.cache.DishCache;
+import com.sky.cache.ResponseCache;
+import com.sky.entity.Category;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.mapper.CategoryMapper;
+import com.sky.properties.CatalogProperties;
+import com.sky.properties.NearCacheProperties;
+import com.sky.result.Result;
+import com.sky.service.DishService;
+import com.sky.service.SetmealService;
+import com.sky.service.impl.CatalogServiceImpl;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 管理端节点修改菜品后，用户端节点在目录版本号和菜品近端缓存各自的校验间隔内读取完整菜单：
+ * 标记为新版本号的菜单不能包含修改前的菜品
+ */
+class MenuControllerTest {
+
+    private static final Long CATEGORY_ID = 1L;
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    // 菜品在数据库中的价格
+    private final AtomicReference<BigDecimal> price = new AtomicReference<>(new BigDecimal("10"));
+    private CatalogVersion userVersion;
+    private MenuController menuController;
+    private DishCache adminCache;
+    private CatalogVersion adminVersion;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new CompactRedisSerializer("smile", getClass().getClassLoader()));
+        redisTemplate.afterPropertiesSet();
+
+        // 用户端节点
+        userVersion = catalogVersion();
+        CategoryMapper categoryMapper = mock(CategoryMapper.class);
+        when(categoryMapper.list(isNull())).thenReturn(Collections.singletonList(
+                Category.builder().id(CATEGORY_ID).type(1).name("热菜").sort(1).build()));
+        DishService dishService = mock(DishService.class);
+        when(dishService.listWithFlavorByCategoryIds(anyList())).thenAnswer(invocation -> {
+            DishVO dishVO = new DishVO();
+            dishVO.setId(1L);
+            dishVO.setCategoryId(CATEGORY_ID);
+            dishVO.setPrice(price.get());
+            Map<Long, List<DishVO>> dishes = new HashMap<>();
+            dishes.put(CATEGORY_ID, Collections.singletonList(dishVO));
+            return dishes;
+        });
+        SetmealService setmealService = mock(SetmealService.class);
+        when(setmealService.listByCategoryIds(anyList())).thenReturn(Collections.emptyMap());
+
+        CatalogServiceImpl catalogService = new CatalogServiceImpl();
+        ReflectionTestUtils.setField(catalogService, "catalogVersion", userVersion);
+        ReflectionTestUtils.setField(catalogService, "categoryMapper", categoryMapper);
+        ReflectionTestUtils.setField(catalogService, "dishCache", dishCache());
+        ReflectionTestUtils.setField(catalogService, "dishService", dishService);
+        ReflectionTestUtils.setField(catalogService, "setmealService", setmealService);
+
+        ResponseCache responseCache = new ResponseCache();
+        ReflectionTestUtils.setField(responseCache, "catalogVersion", userVersion);
+        ReflectionTestUtils.setField(responseCache, "jacksonObjectMapper", new JacksonObjectMapper());
+        ReflectionTestUtils.setField(responseCache, "nearCacheProperties", new NearCacheProperties());
+        responseCache.init();
+
+        menuController = new MenuController();
+        ReflectionTestUtils.setField(menuController, "catalogService", catalogService);
+        ReflectionTestUtils.setField(menuController, "responseCache", responseCache);
+
+        // 管理端节点，与用户端节点共用redis
+        adminCache = dishCache();
+        adminVersion = catalogVersion();
+
+        // 通过管理端节点预热redis连接和序列化，避免首次读取的耗时挤占校验间隔
+        List<DishVO> dishes = adminCache.get(CATEGORY_ID, 0, () -> dishService.listWithFlavorByCategoryIds(
+                Collections.singletonList(CATEGORY_ID)).get(CATEGORY_ID));
+        new JacksonObjectMapper().writeValueAsBytes(Result.success(dishes));
+        adminCache.evictAll();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void menuLabelledWithNewVersionHasModifiedDish() throws Exception {
+        // t0：用户端节点缓存目录版本号，一个校验间隔后才重新读取
+        long start = System.currentTimeMillis();
+        long before = userVersion.current();
+
+        // t0+600ms：第一次读取菜单，菜品近端缓存的校验间隔比目录版本号晚600ms到期
+        sleepUntil(start + 600);
+        JsonNode menu = menu();
+        assertEquals(before, menu.get("version").asLong());
+        assertEquals(0, new BigDecimal("10").compareTo(dishPrice(menu)));
+
+        // t0+700ms：管理端修改菜品价格，提交后清理菜品缓存并递增目录版本号
+        sleepUntil(start + 700);
+        price.set(new BigDecimal("12"));
+        adminCache.evictAll();
+        long after = adminVersion.increment(Collections.singletonList("dish_1"));
+        long mutatedAt = System.currentTimeMillis();
+
+        // 跨过两个校验间隔持续读取菜单
+        int newVersionReads = 0;
+        while (System.currentTimeMillis() < Math.max(start + 2500, mutatedAt + 1800)) {
+            menu = menu();
+            if (menu.get("version").asLong() == after) {
+                newVersionReads++;
+                assertEquals(0, new BigDecimal("12").compareTo(dishPrice(menu)),
+                        "标记为新版本号的菜单包含修改前的菜品价格");
+            } else {
+                assertEquals(before, menu.get("version").asLong());
+            }
+            Thread.sleep(50);
+        }
+
+        assertTrue(newVersionReads > 0);
+        assertEquals(after, menu.get("version").asLong());
+        assertEquals(0, new BigDecimal("12").compareTo(dishPrice(menu)));
+    }
+
+    private JsonNode menu() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/menu");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        menuController.menu(request, response);
+        return new JacksonObjectMapper().readTree(response.getContentAsByteArray()).get("data");
+    }
+
+    private static BigDecimal dishPrice(JsonNode menu) {
+        return new BigDecimal(menu.get("categories").get(0).get("dishes").get(0).get("price").asText());
+    }
+
+    private DishCache dishCache() {
+        CacheTagIndex cacheTagIndex = new CacheTagIndex();
+        ReflectionTestUtils.setField(cacheTagIndex, "stringRedisTemplate", stringRedisTemplate);
+        DishCache dishCache = new DishCache();
+        ReflectionTestUtils.setField(dishCache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(dishCache, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(dishCache, "nearCacheProperties", new NearCacheProperties());
+        ReflectionTestUtils.setField(dishCache, "cacheTagIndex", cacheTagIndex);
+        dishCache.init();
+        return dishCache;
+    }
+
+    private CatalogVersion catalogVersion() {
+        CatalogVersion catalogVersion = new CatalogVersion();
+        ReflectionTestUtils.setField(catalogVersion, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(catalogVersion, "catalogProperties", new CatalogProperties());
+        return catalogVersion;
+    }
+
+    private static void sleepUntil(long millis) throws InterruptedException {
+        long remaining = millis - System.currentTimeMillis();
+        if (remaining > 0) {
+            Thread.sleep(remaining);
+        }
+    }
+}
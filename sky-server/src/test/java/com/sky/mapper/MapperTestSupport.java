@@ -0,0 +1,63 @@
+package com.sky.mapper;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在H2内存数据库（MySQL模式）中执行mapper的xml，用于校验sql的边界条件
+ * 与application.yml中的mybatis配置一致：开启驼峰命名，实体类别名包为com.sky.entity
+ * 与项目中一样由spring管理事务：在spring事务中执行的mapper使用事务的连接，否则自动提交
+ */
+public class MapperTestSupport {
+
+    private static final AtomicInteger DATABASE_ID = new AtomicInteger();
+
+    /**
+     * 创建一个独立的内存数据库，执行建表语句并加载mapper
+     * @param ddl 建表等初始化语句
+     * @param mappers mapper的xml资源路径，如 mapper/UserMapper.xml
+     * @return
+     */
+    public static SqlSessionFactory create(String[] ddl, String... mappers) throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:sky" + DATABASE_ID.incrementAndGet()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,DATE;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : ddl) {
+                statement.execute(sql);
+            }
+        }
+
+        Configuration configuration = new Configuration(
+                new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.getTypeAliasRegistry().registerAliases("com.sky.entity");
+        for (String mapper : mappers) {
+            try (InputStream inputStream = Resources.getResourceAsStream(mapper)) {
+                new XMLMapperBuilder(inputStream, configuration, mapper, configuration.getSqlFragments()).parse();
+            }
+        }
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    /**
+     * 打开自动提交的会话
+     * @param sqlSessionFactory
+     * @return
+     */
+    public static SqlSession open(SqlSessionFactory sqlSessionFactory) {
+        return sqlSessionFactory.openSession(true);
+    }
+}
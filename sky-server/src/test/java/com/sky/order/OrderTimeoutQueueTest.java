@@ -0,0 +1,55 @@
+package com.sky.order;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OrderTimeoutQueueTest {
+
+    private ZSetOperations<String, String> zSetOperations;
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        zSetOperations = mock(ZSetOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        orderTimeoutQueue = new OrderTimeoutQueue();
+        ReflectionTestUtils.setField(orderTimeoutQueue, "stringRedisTemplate", stringRedisTemplate);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    /**
+     * 事务中移除的订单在提交后才移出超时队列，回滚时仍留在队列中
+     */
+    @Test
+    void removeWaitsForCommit() {
+        orderTimeoutQueue.remove(1L);
+        verifyNoInteractions(zSetOperations);
+
+        // 回滚
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        verifyNoInteractions(zSetOperations);
+
+        // 提交
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(zSetOperations).remove(OrderTimeoutQueue.TIMEOUT_KEY, "1");
+    }
+}
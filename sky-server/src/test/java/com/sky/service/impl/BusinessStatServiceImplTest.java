@@ -0,0 +1,175 @@
+package com.sky.service.impl;
+
+import com.sky.entity.BusinessDailyStat;
+import com.sky.entity.Orders;
+import com.sky.mapper.BusinessDailyStatMapper;
+import com.sky.mapper.MapperTestSupport;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.order.OrderStatusCounter;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class BusinessStatServiceImplTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private BusinessDailyStatMapper businessDailyStatMapper;
+    private BusinessStatServiceImpl businessStatService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SqlSessionFactory sqlSessionFactory = MapperTestSupport.create(new String[]{
+                "create table orders (id bigint auto_increment primary key, status int, order_time datetime, amount decimal(10,2))",
+                "create table user (id bigint auto_increment primary key, create_time datetime)",
+                "create table business_daily_stat (stat_date date primary key,"
+                        + " turnover decimal(12,2) not null default 0, total_order_count int not null default 0,"
+                        + " new_users int not null default 0, pending_payment_count int not null default 0,"
+                        + " to_be_confirmed_count int not null default 0, confirmed_count int not null default 0,"
+                        + " delivery_in_progress_count int not null default 0, completed_count int not null default 0,"
+                        + " cancelled_count int not null default 0, closed tinyint not null default 0,"
+                        + " rebuilt tinyint not null default 0, update_time datetime)"
+        }, "mapper/OrderMapper.xml", "mapper/UserMapper.xml", "mapper/BusinessDailyStatMapper.xml");
+        DataSource dataSource = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+        SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        businessDailyStatMapper = sqlSessionTemplate.getMapper(BusinessDailyStatMapper.class);
+
+        businessStatService = new BusinessStatServiceImpl();
+        ReflectionTestUtils.setField(businessStatService, "businessDailyStatMapper", businessDailyStatMapper);
+        ReflectionTestUtils.setField(businessStatService, "orderMapper", sqlSessionTemplate.getMapper(OrderMapper.class));
+        ReflectionTestUtils.setField(businessStatService, "userMapper", sqlSessionTemplate.getMapper(UserMapper.class));
+        ReflectionTestUtils.setField(businessStatService, "orderStatusCounter", mock(OrderStatusCounter.class));
+        ReflectionTestUtils.setField(businessStatService, "transactionManager", transactionManager);
+        businessStatService.init();
+    }
+
+    /**
+     * 上线当天：汇总行只包含上线后的增量，第一次读取时按原始订单补齐上线前的订单
+     */
+    @Test
+    void listRebuildsRowBuiltOnlyFromIncrements() {
+        LocalDate today = LocalDate.now();
+        insertOrder(Orders.COMPLETED, "20.00");
+        insertOrder(Orders.CANCELLED, "8.00");
+
+        // 上线后的第一笔订单，汇总行由这次累加插入
+        transactionTemplate.executeWithoutResult(status -> submit(insertOrder(Orders.PENDING_PAYMENT, "5.00")));
+        assertEquals(1, businessDailyStatMapper.listByDate(today, today).get(0).getTotalOrderCount());
+
+        BusinessDailyStat stat = businessStatService.list(today, today).get(0);
+        assertEquals(3, stat.getTotalOrderCount());
+        assertEquals(1, stat.getCompletedCount());
+        assertEquals(1, stat.getCancelledCount());
+        assertEquals(1, stat.getPendingPaymentCount());
+        assertEquals(0, new BigDecimal("20.00").compareTo(stat.getTurnover()));
+
+        // 汇总后的增量直接累加在补齐的行上
+        transactionTemplate.executeWithoutResult(status -> submit(insertOrder(Orders.PENDING_PAYMENT, "5.00")));
+        List<BusinessDailyStat> statList = businessStatService.list(today, today);
+        assertEquals(4, statList.get(0).getTotalOrderCount());
+        assertEquals(2, statList.get(0).getPendingPaymentCount());
+        assertEquals(1, statList.get(0).getRebuilt());
+    }
+
+    /**
+     * 重新汇总与未提交的下单事务并发：下单事务在提交前才累加增量，执行其余语句期间不持有汇总行的行锁，
+     * 重新汇总不必等待；下单事务提交时再累加，增量既不丢失也不重复
+     */
+    @Test
+    void rebuildDoesNotWaitForOrderTransaction() throws Exception {
+        LocalDate today = LocalDate.now();
+        insertOrder(Orders.COMPLETED, "20.00");
+        businessStatService.closeDay(today);
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        CompletableFuture<Void> order = CompletableFuture.runAsync(() ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    submit(insertOrder(Orders.PENDING_PAYMENT, "5.00"));
+                    submitted.countDown();
+                    // 下单事务的其余语句执行期间完成重新汇总
+                    await(rebuilt);
+                }));
+
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        businessStatService.closeDay(today);
+        rebuilt.countDown();
+        order.get(5, TimeUnit.SECONDS);
+
+        BusinessDailyStat stat = businessDailyStatMapper.listByDate(today, today).get(0);
+        assertEquals(2, stat.getTotalOrderCount());
+        assertEquals(1, stat.getPendingPaymentCount());
+        assertEquals(1, stat.getCompletedCount());
+    }
+
+    /**
+     * 同一事务中多次累加合并到提交前执行，回滚时不累加
+     */
+    @Test
+    void incrementsAppliedOnlyOnCommit() {
+        LocalDate today = LocalDate.now();
+        insertOrder(Orders.COMPLETED, "20.00");
+        businessStatService.closeDay(today);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            submit(insertOrder(Orders.PENDING_PAYMENT, "5.00"));
+            submit(insertOrder(Orders.PENDING_PAYMENT, "6.00"));
+            status.setRollbackOnly();
+        });
+        assertEquals(1, businessDailyStatMapper.listByDate(today, today).get(0).getTotalOrderCount());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            submit(insertOrder(Orders.PENDING_PAYMENT, "5.00"));
+            submit(insertOrder(Orders.PENDING_PAYMENT, "6.00"));
+        });
+        BusinessDailyStat stat = businessDailyStatMapper.listByDate(today, today).get(0);
+        assertEquals(3, stat.getTotalOrderCount());
+        assertEquals(2, stat.getPendingPaymentCount());
+    }
+
+    private Orders insertOrder(Integer status, String amount) {
+        LocalDateTime orderTime = LocalDateTime.now();
+        jdbcTemplate.update("insert into orders(status, order_time, amount) values (?, ?, ?)",
+                status, orderTime, new BigDecimal(amount));
+        Orders orders = new Orders();
+        orders.setStatus(status);
+        orders.setOrderTime(orderTime);
+        orders.setAmount(new BigDecimal(amount));
+        return orders;
+    }
+
+    private void submit(Orders orders) {
+        businessStatService.orderSubmitted(orders);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
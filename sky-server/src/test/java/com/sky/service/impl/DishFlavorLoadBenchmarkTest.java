@@ -0,0 +1,137 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 菜品口味加载的基准测试：逐个菜品查询口味（N+1）与按菜品id集合批量查询的对比
+ * mapper以固定延迟模拟一次数据库往返，比较冷加载一个分类的查询次数和耗时
+ */
+class DishFlavorLoadBenchmarkTest {
+
+    // 模拟一次数据库往返的延迟（微秒）
+    private static final long ROUND_TRIP_MICROS = 300;
+    private static final int ROUNDS = 20;
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private DishMapper dishMapper;
+    private DishFlavorMapper dishFlavorMapper;
+    private DishServiceImpl dishService;
+    private List<Dish> dishes;
+
+    @BeforeEach
+    void setUp() {
+        dishMapper = mock(DishMapper.class);
+        dishFlavorMapper = mock(DishFlavorMapper.class);
+        dishService = new DishServiceImpl();
+        ReflectionTestUtils.setField(dishService, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(dishService, "dishFlavorMapper", dishFlavorMapper);
+
+        when(dishMapper.list(any())).thenAnswer(invocation -> roundTrip(dishes));
+        when(dishFlavorMapper.getByDishId(anyLong())).thenAnswer(invocation ->
+                roundTrip(flavors(invocation.getArgument(0))));
+        when(dishFlavorMapper.getByDishIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return roundTrip(ids.stream().flatMap(id -> flavors(id).stream()).collect(Collectors.toList()));
+        });
+    }
+
+    @Test
+    void batchedLoadUsesConstantQueries() {
+        for (int size : new int[]{1, 10, 40, 100}) {
+            dishes = dishes(size);
+            queries.set(0);
+            List<DishVO> list = dishService.listWithFlavor(new Dish());
+
+            assertEquals(size, list.size());
+            list.forEach(dishVO -> assertEquals(2, dishVO.getFlavors().size()));
+            // 菜品一次、口味一次，与分类大小无关
+            assertEquals(2, queries.get());
+        }
+    }
+
+    @Test
+    void benchmark() {
+        dishes = dishes(40);
+
+        long before = time(() -> {
+            // 改动前的实现：每个菜品单独查询口味
+            List<DishVO> list = new ArrayList<>();
+            for (Dish dish : dishMapper.list(new Dish())) {
+                DishVO dishVO = new DishVO();
+                dishVO.setId(dish.getId());
+                dishVO.setFlavors(dishFlavorMapper.getByDishId(dish.getId()));
+                list.add(dishVO);
+            }
+        });
+        int beforeQueries = queries.getAndSet(0) / ROUNDS;
+
+        long after = time(() -> dishService.listWithFlavor(new Dish()));
+        int afterQueries = queries.getAndSet(0) / ROUNDS;
+
+        System.out.printf("40个菜品冷加载：逐个查询 %d次查询 %.2fms，批量查询 %d次查询 %.2fms%n",
+                beforeQueries, before / 1e6, afterQueries, after / 1e6);
+        assertEquals(41, beforeQueries);
+        assertEquals(2, afterQueries);
+    }
+
+    /**
+     * 预热后执行ROUNDS次，返回平均每次的耗时（纳秒）
+     */
+    private long time(Runnable action) {
+        for (int i = 0; i < ROUNDS; i++) {
+            action.run();
+        }
+        queries.set(0);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            action.run();
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+
+    private <T> T roundTrip(T result) {
+        queries.incrementAndGet();
+        // 自旋等待，避免park的调度粒度放大延迟
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS);
+        while (System.nanoTime() < deadline) {
+            // 模拟等待数据库响应
+        }
+        return result;
+    }
+
+    private List<Dish> dishes(int size) {
+        List<Dish> list = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            list.add(Dish.builder().id(id).categoryId(1L).name("菜品" + id).build());
+        }
+        return list;
+    }
+
+    private List<DishFlavor> flavors(Long dishId) {
+        List<DishFlavor> list = new ArrayList<>();
+        list.add(DishFlavor.builder().dishId(dishId).name("辣度").value("[\"不辣\",\"微辣\"]").build());
+        list.add(DishFlavor.builder().dishId(dishId).name("温度").value("[\"热饮\",\"常温\"]").build());
+        return list;
+    }
+}
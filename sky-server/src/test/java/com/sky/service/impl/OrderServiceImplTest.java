@@ -0,0 +1,112 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersPaymentDTO;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.order.OrderSubmitBatcher;
+import com.sky.order.OrderTimeoutQueue;
+import com.sky.service.BusinessStatService;
+import com.sky.vo.OrderSubmitStatusVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OrderServiceImplTest {
+
+    private static final Long USER_ID = 7L;
+
+    private OrderMapper orderMapper;
+    private OrderSubmitBatcher orderSubmitBatcher;
+    private BusinessStatService businessStatService;
+    private OrderTimeoutQueue orderTimeoutQueue;
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        orderMapper = mock(OrderMapper.class);
+        orderSubmitBatcher = mock(OrderSubmitBatcher.class);
+        businessStatService = mock(BusinessStatService.class);
+        orderTimeoutQueue = mock(OrderTimeoutQueue.class);
+        orderService = new OrderServiceImpl();
+        ReflectionTestUtils.setField(orderService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(orderService, "userMapper", mock(UserMapper.class));
+        ReflectionTestUtils.setField(orderService, "orderSubmitBatcher", orderSubmitBatcher);
+        ReflectionTestUtils.setField(orderService, "businessStatService", businessStatService);
+        ReflectionTestUtils.setField(orderService, "orderTimeoutQueue", orderTimeoutQueue);
+        BaseContext.setCurrentId(USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 异步下单的订单还在下单队列中时支付，提示稍后再支付
+     */
+    @Test
+    void paymentOfOrderStillSubmitting() {
+        when(orderSubmitBatcher.getStatus(USER_ID, "1001")).thenReturn(OrderSubmitStatusVO.builder()
+                .orderNumber("1001")
+                .status(OrderSubmitStatusVO.PROCESSING)
+                .build());
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class, () -> orderService.payment(payment("1001")));
+        assertEquals(MessageConstant.ORDER_SUBMITTING, e.getMessage());
+    }
+
+    @Test
+    void paymentOfMissingOrder() {
+        OrderBusinessException e = assertThrows(OrderBusinessException.class, () -> orderService.payment(payment("1002")));
+        assertEquals(MessageConstant.ORDER_NOT_FOUND, e.getMessage());
+    }
+
+    /**
+     * 超时任务已取消的订单不会被支付覆盖，也不会累加营业数据或移出超时队列
+     */
+    @Test
+    void paymentDoesNotOverwriteCancelledOrder() {
+        when(orderMapper.getByNumber("1003")).thenReturn(Orders.builder().id(3L).number("1003")
+                .status(Orders.CANCELLED).build());
+        when(orderMapper.updateStatus(eq(Orders.TO_BE_CONFIRMED), eq(Orders.PAID), any(), eq("1003"))).thenReturn(0);
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class, () -> orderService.payment(payment("1003")));
+        assertEquals(MessageConstant.ORDER_STATUS_ERROR, e.getMessage());
+        verifyNoInteractions(businessStatService, orderTimeoutQueue);
+    }
+
+    /**
+     * 用户取消时订单已被超时取消，不重复取消，也不重复累加营业数据
+     */
+    @Test
+    void cancelByUserOnlyFromObservedStatus() {
+        when(orderMapper.getOrderById(4L)).thenReturn(Orders.builder().id(4L).status(Orders.PENDING_PAYMENT).build());
+        when(orderMapper.updateStatusBatch(eq(Collections.singletonList(4L)), eq(Orders.PENDING_PAYMENT), any()))
+                .thenReturn(0);
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class, () -> orderService.cancelOrdecrByUser(4L));
+        assertEquals(MessageConstant.ORDER_STATUS_ERROR, e.getMessage());
+        verifyNoInteractions(businessStatService, orderTimeoutQueue);
+    }
+
+    private static OrdersPaymentDTO payment(String orderNumber) {
+        OrdersPaymentDTO ordersPaymentDTO = new OrdersPaymentDTO();
+        ordersPaymentDTO.setOrderNumber(orderNumber);
+        return ordersPaymentDTO;
+    }
+}
@@ -0,0 +1,132 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.MapperTestSupport;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatService;
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReportServiceImplTest {
+
+    private SqlSession sqlSession;
+    private ReportServiceImpl reportService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SqlSessionFactory sqlSessionFactory = MapperTestSupport.create(new String[]{
+                "create table user (id bigint auto_increment primary key, create_time datetime)",
+                "create table orders (id bigint auto_increment primary key, status int, order_time datetime, amount decimal(10,2))"
+        }, "mapper/UserMapper.xml", "mapper/OrderMapper.xml");
+        sqlSession = MapperTestSupport.open(sqlSessionFactory);
+
+        reportService = new ReportServiceImpl();
+        ReflectionTestUtils.setField(reportService, "userMapper", sqlSession.getMapper(UserMapper.class));
+        ReflectionTestUtils.setField(reportService, "orderMapper", sqlSession.getMapper(OrderMapper.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlSession.close();
+    }
+
+    @Test
+    void userStatisticsCountsBoundaryUsersExactlyOnce() throws Exception {
+        insertUsers(
+                "2023-12-31 23:59:59",     // 区间之前，计入累计起点
+                "2024-01-01 00:00:00",     // 恰好在begin，只计入第一天
+                "2024-01-02 00:00:00",     // 第二天的开始
+                "2024-01-02 23:59:59.999", // end当天的最后时刻
+                "2024-01-03 00:00:00");    // 区间之后，不统计
+
+        UserReportVO vo = reportService.getUserStatistics(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2));
+
+        assertEquals("2024-01-01,2024-01-02", vo.getDateList());
+        assertEquals("1,2", vo.getNewUserList());
+        assertEquals("2,4", vo.getTotalUserList());
+    }
+
+    @Test
+    void orderStatisticsCountsBoundaryOrders() throws Exception {
+        insert("insert into orders(status, order_time, amount) values (5, '%s', 10)",
+                "2023-12-31 23:59:59",     // 区间之前，不统计
+                "2024-01-01 00:00:00",     // 恰好在begin，计入第一天
+                "2024-01-02 23:59:59.999", // end当天的最后时刻
+                "2024-01-03 00:00:00");    // 区间之后，不统计
+
+        OrderReportVO orderVO = reportService.getOrderStatistics(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2));
+        assertEquals("1,1", orderVO.getOrderCountList());
+        assertEquals("1,1", orderVO.getValidOrderCountList());
+
+        TurnoverReportVO turnoverVO = reportService.getTurnoverStatistics(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2));
+        assertEquals("10.0,10.0", turnoverVO.getTurnoverList());
+    }
+
+    @Test
+    void exportRejectsInvalidDateRange() {
+        ReportBusinessException reversed = assertThrows(ReportBusinessException.class, () ->
+                reportService.exportBusinessData(LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 1), null));
+        assertEquals(MessageConstant.REPORT_DATE_RANGE_ERROR, reversed.getMessage());
+
+        ReportBusinessException tooLong = assertThrows(ReportBusinessException.class, () ->
+                reportService.exportBusinessData(LocalDate.of(2024, 1, 1), LocalDate.of(2025, 1, 1), null));
+        assertEquals(MessageConstant.REPORT_DATE_RANGE_TOO_LONG, tooLong.getMessage());
+    }
+
+    /**
+     * 查询营业数据失败时抛出业务异常，不向客户端写出文件
+     */
+    @Test
+    void exportFailureIsNotWrittenAsFile() throws Exception {
+        BusinessStatService businessStatService = mock(BusinessStatService.class);
+        when(businessStatService.list(any(), any())).thenThrow(new IllegalStateException("db down"));
+        ThreadPoolTaskExecutor reportExecutor = new ThreadPoolTaskExecutor();
+        reportExecutor.initialize();
+        ReflectionTestUtils.setField(reportService, "businessStatService", businessStatService);
+        ReflectionTestUtils.setField(reportService, "reportExecutor", reportExecutor);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        try {
+            ReportBusinessException e = assertThrows(ReportBusinessException.class, () ->
+                    reportService.exportBusinessData(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2), response));
+            assertEquals(MessageConstant.REPORT_EXPORT_FAILED, e.getMessage());
+            verify(response, never()).getOutputStream();
+        } finally {
+            reportExecutor.shutdown();
+        }
+    }
+
+    private void insertUsers(String... createTimes) throws Exception {
+        insert("insert into user(create_time) values ('%s')", createTimes);
+    }
+
+    private void insert(String sql, String... times) throws Exception {
+        try (Statement statement = sqlSession.getConnection().createStatement()) {
+            for (String time : times) {
+                statement.execute(String.format(sql, time));
+            }
+        }
+    }
+}
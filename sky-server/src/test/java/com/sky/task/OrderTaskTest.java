@@ -0,0 +1,48 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.order.OrderBatchTransition;
+import com.sky.properties.OrderTimeoutProperties;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class OrderTaskTest {
+
+    /**
+     * 派送超时自动完成的订单同时记录送达时间
+     */
+    @Test
+    void processDeliveryOrderSetsDeliveryTime() {
+        TaskLeader taskLeader = mock(TaskLeader.class);
+        doAnswer(invocation -> invocation.getArgument(1, IntSupplier.class).getAsInt())
+                .when(taskLeader).run(any(), any(IntSupplier.class));
+        OrderBatchTransition orderBatchTransition = mock(OrderBatchTransition.class);
+        OrderTask orderTask = new OrderTask();
+        ReflectionTestUtils.setField(orderTask, "taskLeader", taskLeader);
+        ReflectionTestUtils.setField(orderTask, "orderBatchTransition", orderBatchTransition);
+        ReflectionTestUtils.setField(orderTask, "orderTimeoutProperties", new OrderTimeoutProperties());
+
+        LocalDateTime before = LocalDateTime.now();
+        orderTask.processDeliveryOrder();
+
+        ArgumentCaptor<Orders> target = ArgumentCaptor.forClass(Orders.class);
+        verify(orderBatchTransition).transitionAll(eq(Orders.DELIVERY_IN_PROGRESS), any(), target.capture(), anyInt());
+        assertEquals(Orders.COMPLETED, target.getValue().getStatus());
+        assertNotNull(target.getValue().getDeliveryTime());
+        assertFalse(target.getValue().getDeliveryTime().isBefore(before));
+    }
+}
@@ -0,0 +1,101 @@
+package com.sky.task;
+
+import com.sky.properties.IdGeneratorProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkerIdLeaseTest {
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    private IdGeneratorProperties idGeneratorProperties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        idGeneratorProperties = new IdGeneratorProperties();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void nodesLeaseDifferentWorkerIds() {
+        long first = lease().acquire();
+        long second = lease().acquire();
+
+        assertNotEquals(first, second);
+        assertTrue(stringRedisTemplate.getExpire(WorkerIdLease.LEASE_KEY_PREFIX + first) > 0);
+    }
+
+    @Test
+    void failsToStartWhenAllWorkerIdsAreLeased() {
+        Map<String, String> leases = new HashMap<>();
+        for (long id = 0; id <= SnowflakeIdGenerator.MAX_WORKER_ID; id++) {
+            leases.put(WorkerIdLease.LEASE_KEY_PREFIX + id, "other");
+        }
+        stringRedisTemplate.opsForValue().multiSet(leases);
+
+        assertThrows(IllegalStateException.class, () -> lease().acquire());
+    }
+
+    @Test
+    void renewReacquiresExpiredLeaseAndStopsWhenTakenOver() {
+        WorkerIdLease lease = lease();
+        long id = lease.acquire();
+        String key = WorkerIdLease.LEASE_KEY_PREFIX + id;
+        assertTrue(lease.isValid());
+
+        // 租约过期但未被占用，续约时重新占用同一个节点id
+        stringRedisTemplate.delete(key);
+        lease.renew();
+        assertTrue(lease.isValid());
+        assertNotEquals("other", stringRedisTemplate.opsForValue().get(key));
+
+        // 节点id被其他节点占用，本节点停止生成id
+        stringRedisTemplate.opsForValue().set(key, "other");
+        lease.renew();
+        assertFalse(lease.isValid());
+        assertEquals("other", stringRedisTemplate.opsForValue().get(key));
+
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(id, lease::isValid);
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    private WorkerIdLease lease() {
+        WorkerIdLease lease = new WorkerIdLease();
+        ReflectionTestUtils.setField(lease, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(lease, "idGeneratorProperties", idGeneratorProperties);
+        return lease;
+    }
+}
@@ -0,0 +1,73 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * id生成器的吞吐量基准测试：原先的 redis INCR 每生成一个id需要一次网络往返，
+ * 雪花算法在本地通过CAS生成；分别测量单线程和多线程竞争下的每个id耗时
+ */
+class SnowflakeIdGeneratorBenchmarkTest {
+
+    private static final int WARM_UP = 200_000;
+    private static final int PER_THREAD = 1_000_000;
+
+    private final AtomicLong sink = new AtomicLong();
+
+    @Test
+    void benchmark() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        for (int i = 0; i < WARM_UP; i++) {
+            sink.addAndGet(generator.nextId());
+        }
+
+        for (int threads : new int[]{1, 4, 8}) {
+            long nanos = run(generator, threads);
+            double nsPerId = (double) nanos / PER_THREAD;
+            double idsPerSecond = threads * PER_THREAD / (nanos / 1e9);
+            System.out.printf("雪花算法 %d个线程：%.1fns/id，%.0f万个id/秒%n", threads, nsPerId, idsPerSecond / 1e4);
+            // 单个节点每毫秒最多4096个序列号，持续超过该速度时借用之后的毫秒，吞吐量不受其限制
+            assertTrue(nsPerId < 100_000);
+        }
+    }
+
+    /**
+     * 多个线程同时生成PER_THREAD个id，返回最慢线程的耗时（纳秒）
+     */
+    private long run(SnowflakeIdGenerator generator, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        List<Future<Long>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    long start = System.nanoTime();
+                    long sum = 0;
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        sum += generator.nextId();
+                    }
+                    sink.addAndGet(sum);
+                    return System.nanoTime() - start;
+                }));
+            }
+            long max = 0;
+            for (Future<Long> future : futures) {
+                max = Math.max(max, future.get());
+            }
+            return max;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
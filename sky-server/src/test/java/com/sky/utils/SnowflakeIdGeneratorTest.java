@@ -0,0 +1,158 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final int SEQUENCE_PER_MILLIS = 4096;
+
+    @Test
+    void borrowsNextMillisWhenSequenceIsExhausted() {
+        FixedClockGenerator generator = new FixedClockGenerator(7);
+        generator.now = 1_800_000_000_000L;
+
+        long last = -1;
+        for (int i = 0; i < SEQUENCE_PER_MILLIS; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last);
+            assertEquals(i, sequence(id));
+            last = id;
+        }
+
+        // 本毫秒的序列号用完，借用下一毫秒
+        long borrowed = generator.nextId();
+        assertTrue(borrowed > last);
+        assertEquals(millis(last) + 1, millis(borrowed));
+        assertEquals(0, sequence(borrowed));
+
+        // 时钟追上被借用的毫秒，继续使用该毫秒的序列号
+        generator.now++;
+        long caughtUp = generator.nextId();
+        assertEquals(millis(borrowed), millis(caughtUp));
+        assertEquals(1, sequence(caughtUp));
+
+        // 时钟回拨时继续在最后使用的毫秒上递增
+        generator.now -= 10;
+        long rolledBack = generator.nextId();
+        assertTrue(rolledBack > caughtUp);
+        assertEquals(7, workerId(rolledBack));
+    }
+
+    @Test
+    void concurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        // 系统时钟下多线程竞争
+        assertUniqueAndIncreasing(new SnowflakeIdGenerator(1), 8, 50_000);
+    }
+
+    @Test
+    void concurrentIdsStayUniqueWhileBorrowingAheadOfFrozenClock() throws Exception {
+        // 时钟停止时所有线程共同耗尽序列号，持续借用之后的毫秒
+        FixedClockGenerator generator = new FixedClockGenerator(2);
+        generator.now = 1_800_000_000_000L;
+        Set<Long> ids = assertUniqueAndIncreasing(generator, 8, 5_000);
+
+        long maxMillis = ids.stream().mapToLong(SnowflakeIdGeneratorTest::millis).max().getAsLong();
+        assertEquals(millis(generator.idAt(generator.now)) + 40_000 / SEQUENCE_PER_MILLIS, maxMillis);
+    }
+
+    @Test
+    void stopsWhenWorkerIdIsNoLongerValid() {
+        boolean[] valid = {true};
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> valid[0]);
+        generator.nextId();
+
+        valid[0] = false;
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    /**
+     * 多个线程同时生成id，校验全部唯一、每个线程内严格递增、节点id正确
+     * @return 生成的所有id
+     */
+    private Set<Long> assertUniqueAndIncreasing(SnowflakeIdGenerator generator, int threads, int perThread)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                Callable<long[]> task = () -> {
+                    ready.countDown();
+                    ready.await();
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                };
+                futures.add(executor.submit(task));
+            }
+
+            Set<Long> all = new HashSet<>(threads * perThread * 2);
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertTrue(i == 0 || ids[i] > ids[i - 1], "同一线程内的id必须递增");
+                    assertEquals(generator.getWorkerId(), workerId(ids[i]));
+                    all.add(ids[i]);
+                }
+            }
+            assertEquals(threads * perThread, all.size());
+            return all;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long millis(long id) {
+        return id >>> 22;
+    }
+
+    private static long workerId(long id) {
+        return (id >>> 12) & 1023;
+    }
+
+    private static long sequence(long id) {
+        return id & 4095;
+    }
+
+    /**
+     * 时钟由测试控制的生成器
+     */
+    private static class FixedClockGenerator extends SnowflakeIdGenerator {
+
+        private volatile long now;
+
+        FixedClockGenerator(long workerId) {
+            super(workerId);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        /**
+         * 指定时间、序列号为0时生成的id
+         */
+        long idAt(long millis) {
+            FixedClockGenerator generator = new FixedClockGenerator(getWorkerId());
+            generator.now = millis;
+            return generator.nextId();
+        }
+    }
+}
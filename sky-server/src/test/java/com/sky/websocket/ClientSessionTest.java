@@ -0,0 +1,153 @@
+package com.sky.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ClientSessionTest {
+
+    private Session session;
+    private RemoteEndpoint.Async async;
+    private TaskQueue executor;
+    private WebSocketMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(Session.class);
+        async = mock(RemoteEndpoint.Async.class);
+        when(session.getAsyncRemote()).thenReturn(async);
+        executor = new TaskQueue();
+        metrics = new WebSocketMetrics();
+    }
+
+    @Test
+    void sendsOneMessageAtATimeInOrder() {
+        ClientSession clientSession = new ClientSession("1", session, 16, 4);
+        assertTrue(clientSession.offer("a", executor, metrics));
+        assertTrue(clientSession.offer("b", executor, metrics));
+        executor.runAll();
+
+        // 第一条发送完成前不会发送第二条
+        ArgumentCaptor<SendHandler> handler = ArgumentCaptor.forClass(SendHandler.class);
+        verify(async).sendText(eq("a"), handler.capture());
+        verify(async, never()).sendText(eq("b"), any(SendHandler.class));
+
+        handler.getValue().onResult(new SendResult());
+        executor.runAll();
+        verify(async).sendText(eq("b"), any(SendHandler.class));
+        assertEquals(0, clientSession.getDepth());
+    }
+
+    @Test
+    void sendFailureClosesWithUnexpectedCondition() throws Exception {
+        doAnswer(invocation -> {
+            invocation.getArgument(1, SendHandler.class).onResult(new SendResult(new IOException("timeout")));
+            return null;
+        }).when(async).sendText(anyString(), any(SendHandler.class));
+
+        ClientSession clientSession = new ClientSession("1", session, 16, 4);
+        clientSession.offer("a", executor, metrics);
+        executor.runAll();
+
+        ArgumentCaptor<CloseReason> reason = ArgumentCaptor.forClass(CloseReason.class);
+        verify(session).close(reason.capture());
+        assertEquals(CloseReason.CloseCodes.UNEXPECTED_CONDITION, reason.getValue().getCloseCode());
+        assertTrue(clientSession.isClosed());
+    }
+
+    @Test
+    void slowConsumerCloseIsRetriedOffTheCallerThreadWhenPoolIsFull() throws Exception {
+        ClientSession clientSession = new ClientSession("1", session, 1, 1);
+        clientSession.offer("a", executor, metrics);
+        executor.runAll();
+        // 第一条发送未完成，第二条留在队列中，第三条超出容量被丢弃并触发关闭
+        clientSession.offer("b", executor, metrics);
+        executor.rejecting = true;
+        assertFalse(clientSession.offer("c", executor, metrics));
+
+        assertTrue(clientSession.isClosed());
+        verify(session, never()).close(any(CloseReason.class));
+
+        // 线程池恢复后，下一次推送重新提交关闭任务
+        executor.rejecting = false;
+        assertFalse(clientSession.offer("d", executor, metrics));
+        verify(session, never()).close(any(CloseReason.class));
+        executor.runAll();
+
+        ArgumentCaptor<CloseReason> reason = ArgumentCaptor.forClass(CloseReason.class);
+        verify(session, times(1)).close(reason.capture());
+        assertEquals(CloseReason.CloseCodes.TRY_AGAIN_LATER, reason.getValue().getCloseCode());
+    }
+
+    /**
+     * 移除或被重连替换的会话在线程池中发送关闭帧，之后完成的发送不会使队列深度变为负数
+     */
+    @Test
+    void closeAsyncClosesOffTheCallerThread() throws Exception {
+        ClientSession clientSession = new ClientSession("1", session, 16, 4);
+        clientSession.offer("a", executor, metrics);
+        clientSession.offer("b", executor, metrics);
+        executor.runAll();
+        ArgumentCaptor<SendHandler> handler = ArgumentCaptor.forClass(SendHandler.class);
+        verify(async).sendText(eq("a"), handler.capture());
+
+        clientSession.closeAsync(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "replaced"), executor);
+        assertTrue(clientSession.isClosed());
+        assertEquals(0, clientSession.getDepth());
+        verify(session, never()).close(any(CloseReason.class));
+
+        handler.getValue().onResult(new SendResult());
+        executor.runAll();
+        verify(async, never()).sendText(eq("b"), any(SendHandler.class));
+        verify(session, times(1)).close(any(CloseReason.class));
+        assertEquals(0, clientSession.getDepth());
+    }
+
+    /**
+     * 手动执行任务的线程池，可模拟队列已满
+     */
+    private static class TaskQueue implements Executor {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean rejecting;
+
+        @Override
+        public void execute(Runnable command) {
+            if (rejecting) {
+                throw new RejectedExecutionException("full");
+            }
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 两个节点通过本地启动的redis转发消息
+ */
+class WebSocketRelayTest {
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    private WebSocketProperties webSocketProperties;
+    private final List<WebSocketRelay> relays = new ArrayList<>();
+    private final List<RedisMessageListenerContainer> containers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+        webSocketProperties = new WebSocketProperties();
+        webSocketProperties.setRelayBatchMillis(10);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        relays.forEach(WebSocketRelay::destroy);
+        for (RedisMessageListenerContainer container : containers) {
+            container.destroy();
+        }
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void messagePublishedOnOneNodeIsDeliveredOnEveryNode() {
+        WebSocketServer serverA = mock(WebSocketServer.class);
+        WebSocketServer serverB = mock(WebSocketServer.class);
+        WebSocketRelay relayA = relay(serverA, stringRedisTemplate);
+        relay(serverB, stringRedisTemplate);
+
+        relayA.publish("shop:1", "m1");
+        relayA.publish("shop:1", "m2");
+        relayA.publish(null, "all");
+
+        for (WebSocketServer server : new WebSocketServer[]{serverA, serverB}) {
+            InOrder inOrder = inOrder(server);
+            inOrder.verify(server, timeout(5000)).sendToTopic("shop:1", "m1");
+            inOrder.verify(server, timeout(5000)).sendToTopic("shop:1", "m2");
+            inOrder.verify(server, timeout(5000)).sendToAllClient("all");
+        }
+    }
+
+    @Test
+    void deliversLocallyWhenRedisIsUnavailable() {
+        StringRedisTemplate failing = mock(StringRedisTemplate.class);
+        doThrow(new RedisConnectionFailureException("redis down"))
+                .when(failing).convertAndSend(anyString(), any());
+        WebSocketServer serverA = mock(WebSocketServer.class);
+        WebSocketRelay relayA = relay(serverA, failing);
+
+        relayA.publish("shop:1", "m1");
+
+        verify(serverA, timeout(5000)).sendToTopic("shop:1", "m1");
+    }
+
+    /**
+     * 创建一个节点：转发组件和订阅频道的监听容器
+     * @param webSocketServer
+     * @param publisher 发布消息使用的redis模板
+     * @return
+     */
+    private WebSocketRelay relay(WebSocketServer webSocketServer, StringRedisTemplate publisher) {
+        WebSocketRelay relay = new WebSocketRelay();
+        ReflectionTestUtils.setField(relay, "stringRedisTemplate", publisher);
+        ReflectionTestUtils.setField(relay, "webSocketServer", webSocketServer);
+        ReflectionTestUtils.setField(relay, "webSocketProperties", webSocketProperties);
+        relay.init();
+        relays.add(relay);
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(relay, new ChannelTopic(webSocketProperties.getRelayChannel()));
+        container.afterPropertiesSet();
+        container.start();
+        containers.add(container);
+        return relay;
+    }
+}
@@ -0,0 +1,18 @@
+-- 每日营业数据汇总表
+-- 订单状态流转时增量更新，每日凌晨由定时任务按原始订单重新汇总前一天的数据并日结
+CREATE TABLE IF NOT EXISTS `business_daily_stat` (
+  `stat_date` date NOT NULL COMMENT '统计日期（下单日期）',
+  `turnover` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '营业额：已完成订单的金额合计',
+  `total_order_count` int NOT NULL DEFAULT '0' COMMENT '订单总数',
+  `new_users` int NOT NULL DEFAULT '0' COMMENT '新增用户数',
+  `pending_payment_count` int NOT NULL DEFAULT '0' COMMENT '待付款订单数',
+  `to_be_confirmed_count` int NOT NULL DEFAULT '0' COMMENT '待接单订单数',
+  `confirmed_count` int NOT NULL DEFAULT '0' COMMENT '已接单订单数',
+  `delivery_in_progress_count` int NOT NULL DEFAULT '0' COMMENT '派送中订单数',
+  `completed_count` int NOT NULL DEFAULT '0' COMMENT '已完成订单数（有效订单数）',
+  `cancelled_count` int NOT NULL DEFAULT '0' COMMENT '已取消订单数',
+  `closed` tinyint NOT NULL DEFAULT '0' COMMENT '是否已日结 0否 1是',
+  `rebuilt` tinyint NOT NULL DEFAULT '0' COMMENT '是否已按原始数据汇总过 0否 1是',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='每日营业数据汇总';
@@ -0,0 +1,18 @@
+-- 订单查询索引
+-- 订单搜索、历史订单按 order_time desc, id desc 排序并支持游标分页：
+--   and (order_time < #{lastOrderTime} or (order_time = #{lastOrderTime} and id < #{lastId}))
+-- 以下索引使各查询按索引顺序读取，只扫描一页的行数，不随页码增大而变慢
+
+-- 用户历史订单：where user_id = ? [and status = ?] order by order_time desc, id desc
+ALTER TABLE orders ADD INDEX `idx_user_time` (`user_id`, `order_time`);
+
+-- 按状态搜索订单、统计各状态订单数、超时取消和派送完成的定时任务：where status = ? [and order_time < ?]
+ALTER TABLE orders ADD INDEX `idx_status_time` (`status`, `order_time`);
+
+-- 不按状态搜索订单、营业数据统计、报表导出：where order_time between ? and ? order by order_time
+ALTER TABLE orders ADD INDEX `idx_order_time` (`order_time`);
+
+-- 支付和支付回调按订单号查询订单：where number = ?
+ALTER TABLE orders ADD INDEX `idx_number` (`number`);
+
+-- 注：按订单号、手机号搜索使用 like '%?%'，无法使用索引，这类条件只在上述索引缩小范围后过滤
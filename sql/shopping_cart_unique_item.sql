@@ -0,0 +1,26 @@
+-- 购物车商品唯一索引
+-- 同一用户的同一商品（菜品+口味 / 套餐）只保留一行，加减数量使用单条 upsert / 条件更新完成
+
+-- 1.合并已有的重复数据：数量累加到id最小的一行，再删除其余行
+UPDATE shopping_cart sc
+JOIN (
+  SELECT MIN(id) id, SUM(number) total
+  FROM shopping_cart
+  GROUP BY user_id, dish_id, setmeal_id, dish_flavor
+  HAVING COUNT(*) > 1
+) d ON sc.id = d.id
+SET sc.number = d.total;
+
+DELETE sc FROM shopping_cart sc
+JOIN shopping_cart keep
+  ON sc.user_id = keep.user_id
+ AND sc.dish_id <=> keep.dish_id
+ AND sc.setmeal_id <=> keep.setmeal_id
+ AND sc.dish_flavor <=> keep.dish_flavor
+ AND sc.id > keep.id;
+
+-- 2.dish_id、setmeal_id、dish_flavor可能为NULL，唯一索引不约束NULL，用生成列把它们拼成非空的商品标识
+ALTER TABLE shopping_cart
+  ADD COLUMN `item_key` varchar(255) GENERATED ALWAYS AS
+    (CONCAT(IFNULL(`dish_id`, ''), '_', IFNULL(`setmeal_id`, ''), '_', IFNULL(`dish_flavor`, ''))) STORED COMMENT '商品标识',
+  ADD UNIQUE KEY `uk_user_item` (`user_id`, `item_key`);